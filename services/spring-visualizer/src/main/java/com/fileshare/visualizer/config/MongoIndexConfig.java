@@ -0,0 +1,43 @@
+package com.fileshare.visualizer.config;
+
+import com.fileshare.visualizer.model.FileMetadata;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Índices que necesitan las consultas del visualizador sobre file_metadata.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class MongoIndexConfig {
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            // Paginación keyset del dashboard
+            mongoTemplate.indexOps(FileMetadata.class).ensureIndex(new Index()
+                    .on("createdAt", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("createdAt_-1__id_-1"));
+            // Lecturas de getFile y getUserFiles en visualizer.read-mode=mongo
+            mongoTemplate.indexOps(FileMetadata.class).ensureIndex(new Index()
+                    .on("fileId", Sort.Direction.ASC)
+                    .named("fileId_1"));
+            mongoTemplate.indexOps(FileMetadata.class).ensureIndex(new Index()
+                    .on("userId", Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.DESC)
+                    .named("userId_1_createdAt_-1"));
+        } catch (RuntimeException e) {
+            log.warn("Error creating file_metadata indexes, continuing anyway: {}", e.getMessage());
+        }
+    }
+}
@@ -1,10 +1,29 @@
 package com.fileshare.visualizer.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.netty.channel.ChannelOption;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.ws.client.core.WebServiceTemplate;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class SoapClientConfig {
@@ -12,6 +31,30 @@ public class SoapClientConfig {
     @Value("${soap.client.url}")
     private String soapUrl;
 
+    @Value("${soap.client.http.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${soap.client.http.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${soap.client.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${soap.client.http.read-timeout-ms:10000}")
+    private long readTimeoutMs;
+
+    @Value("${soap.client.http.pool-acquire-timeout-ms:1000}")
+    private long poolAcquireTimeoutMs;
+
+    @Value("${soap.client.http.keep-alive-ms:30000}")
+    private long keepAliveMs;
+
+    @Value("${soap.client.http.idle-eviction-ms:30000}")
+    private long idleEvictionMs;
+
+    @Value("${soap.client.http.connection-ttl-ms:300000}")
+    private long connectionTtlMs;
+
     @Bean
     public Jaxb2Marshaller marshaller() {
         Jaxb2Marshaller marshaller = new Jaxb2Marshaller();
@@ -27,4 +70,75 @@ public class SoapClientConfig {
         template.setUnmarshaller(marshaller);
         return template;
     }
+
+    /**
+     * Pool de conexiones keep-alive hacia soap-service. Todas las llamadas van a la misma
+     * ruta, así que max-connections-per-route es el límite efectivo.
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager soapConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMilliseconds(connectionTtlMs))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient soapHttpClient(PoolingHttpClientConnectionManager soapConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(soapConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // Si el pool está agotado se falla rápido en lugar de bloquear el hilo
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        // Se usa cuando soap-service no envía cabecera Keep-Alive
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAliveMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictionMs))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate soapRestTemplate(CloseableHttpClient soapHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(soapHttpClient));
+    }
+
+    /**
+     * Cliente no bloqueante para {@link com.fileshare.visualizer.service.ReactiveSoapClientService}.
+     * Usa su propio pool de Reactor Netty con los mismos límites y timeouts que el bloqueante.
+     */
+    @Bean
+    public WebClient soapWebClient(WebClient.Builder builder) {
+        ConnectionProvider provider = ConnectionProvider.builder("soap-service")
+                .maxConnections(maxConnectionsPerRoute)
+                .pendingAcquireTimeout(Duration.ofMillis(poolAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(idleEvictionMs))
+                .maxLifeTime(Duration.ofMillis(connectionTtlMs))
+                .evictInBackground(Duration.ofMillis(idleEvictionMs))
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs));
+
+        return builder
+                .baseUrl(soapUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    /**
+     * Expone httpcomponents.httpclient.pool.* (conexiones libres, alquiladas y en espera) en actuator.
+     */
+    @Bean
+    public MeterBinder soapConnectionPoolMetrics(PoolingHttpClientConnectionManager soapConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(soapConnectionManager, "soap-service");
+    }
 }
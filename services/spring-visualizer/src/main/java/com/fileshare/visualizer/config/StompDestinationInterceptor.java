@@ -0,0 +1,36 @@
+package com.fileshare.visualizer.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Valida las suscripciones STOMP: los destinos con patrón se rechazan, porque
+ * /topic/users/** equivaldría a una suscripción global y además no se contaría en
+ * {@link StompSubscriptions}.
+ */
+@Component
+public class StompDestinationInterceptor implements ChannelInterceptor {
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            checkSubscription(accessor);
+        }
+        return message;
+    }
+
+    private void checkSubscription(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null || destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0
+                || destination.indexOf('{') >= 0) {
+            throw new MessageDeliveryException("Invalid subscription destination: " + destination);
+        }
+    }
+}
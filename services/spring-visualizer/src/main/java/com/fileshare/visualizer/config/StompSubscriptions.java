@@ -0,0 +1,119 @@
+package com.fileshare.visualizer.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cuenta las suscripciones STOMP vivas por destino, para no publicar en un topic que
+ * nadie escucha. Se registra en el canal de entrada de clientes
+ * ({@link WebSocketConfig}) y ve cada SUBSCRIBE,
+ * UNSUBSCRIBE y DISCONNECT, incluido el que genera Spring al cerrarse la sesión.
+ * <p>
+ * Solo cuenta destinos exactos; las suscripciones con patrón se rechazan antes de llegar aquí.
+ * <p>
+ * Los frames de una sesión llegan en orden (preserve-receive-order), pero el DISCONNECT
+ * del cierre entra por otro camino y puede adelantarse a un SUBSCRIBE pendiente. Por eso
+ * los tres se aplican bajo un lock y se recuerdan durante un rato las sesiones cerradas,
+ * para que un SUBSCRIBE tardío no vuelva a contar.
+ */
+@Component
+public class StompSubscriptions implements ChannelInterceptor {
+
+    private static final Duration CLOSED_SESSION_MEMORY = Duration.ofMinutes(1);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Se lee sin lock desde hasSubscribers y los gauges
+    private final Map<String, Integer> subscribers = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> destino), solo bajo el lock
+    private final Map<String, Map<String, String>> sessions = new HashMap<>();
+    private final Cache<String, Boolean> closedSessions = Caffeine.newBuilder()
+            .expireAfterWrite(CLOSED_SESSION_MEMORY)
+            .build();
+
+    public StompSubscriptions(MeterRegistry meterRegistry) {
+        Gauge.builder("visualizer.websocket.subscriptions", this,
+                        s -> s.subscribers.values().stream().mapToInt(Integer::intValue).sum())
+                .description("Live STOMP subscriptions").register(meterRegistry);
+        Gauge.builder("visualizer.websocket.destinations", subscribers, Map::size)
+                .description("Destinations with at least one STOMP subscription").register(meterRegistry);
+    }
+
+    public boolean hasSubscribers(String destination) {
+        return subscribers.containsKey(destination);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) {
+            return message;
+        }
+        lock.lock();
+        try {
+            switch (type) {
+                case SUBSCRIBE -> subscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers),
+                        SimpMessageHeaderAccessor.getDestination(headers));
+                case UNSUBSCRIBE -> unsubscribe(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers));
+                case DISCONNECT -> disconnect(sessionId);
+                default -> {
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return message;
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (subscriptionId == null || destination == null || closedSessions.getIfPresent(sessionId) != null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(sessionId, id -> new HashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            decrement(previous);
+        }
+        subscribers.merge(destination, 1, Integer::sum);
+    }
+
+    private void unsubscribe(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        if (subscriptions == null || subscriptionId == null) {
+            return;
+        }
+        String destination = subscriptions.remove(subscriptionId);
+        if (destination != null) {
+            decrement(destination);
+        }
+    }
+
+    private void disconnect(String sessionId) {
+        closedSessions.put(sessionId, Boolean.TRUE);
+        Map<String, String> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::decrement);
+        }
+    }
+
+    private void decrement(String destination) {
+        // Al llegar a cero se quita la entrada: hasSubscribers es un containsKey
+        subscribers.computeIfPresent(destination, (d, count) -> count > 1 ? count - 1 : null);
+    }
+}
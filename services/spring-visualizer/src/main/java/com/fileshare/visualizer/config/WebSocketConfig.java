@@ -1,6 +1,8 @@
 package com.fileshare.visualizer.config;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -8,8 +10,12 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompDestinationInterceptor destinationInterceptor;
+    private final StompSubscriptions subscriptions;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         // Habilita un simple broker en memoria para enviar mensajes a /topic
@@ -18,11 +24,19 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.setApplicationDestinationPrefixes("/app");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Primero se valida la suscripción; solo se cuentan las aceptadas
+        registration.interceptors(destinationInterceptor, subscriptions);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Endpoint WebSocket principal con soporte para SockJS como fallback
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        // Los frames de cada sesión se procesan en orden: un UNSUBSCRIBE no adelanta a su SUBSCRIBE
+        registry.setPreserveReceiveOrder(true);
     }
 }
@@ -0,0 +1,65 @@
+package com.fileshare.visualizer.controller;
+
+import com.fileshare.visualizer.dto.DownloadUrlDto;
+import com.fileshare.visualizer.dto.FileInfoDto;
+import com.fileshare.visualizer.service.ReactiveSoapClientService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Versión reactiva de los endpoints SOAP de {@link VisualizerController}. El hilo de la
+ * petición se libera mientras se espera a soap-service; con Accept: application/x-ndjson
+ * los archivos de un usuario se envían a medida que se parsean.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/visualizer/reactive")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ReactiveVisualizerController {
+
+    private final ReactiveSoapClientService reactiveSoapClientService;
+
+    @GetMapping("/files/{fileId}")
+    public Mono<ResponseEntity<FileInfoDto>> getFile(@PathVariable String fileId) {
+        log.info("Reactive REST request to get file via SOAP: {}", fileId);
+
+        return reactiveSoapClientService.getFile(fileId)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/users/{userId}/files")
+    public Flux<FileInfoDto> getUserFiles(@PathVariable String userId) {
+        log.info("Reactive REST request to get user files via SOAP: {}", userId);
+
+        return reactiveSoapClientService.getUserFiles(userId);
+    }
+
+    @GetMapping("/files/{fileId}/download")
+    public Mono<ResponseEntity<DownloadUrlDto>> getDownloadUrl(
+            @PathVariable String fileId,
+            @RequestParam(defaultValue = "3600") int expiryInSeconds) {
+        log.info("Reactive REST request to get download URL via SOAP: {}", fileId);
+
+        return reactiveSoapClientService.getDownloadUrl(fileId, expiryInSeconds)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/files/{fileId}")
+    public Mono<ResponseEntity<Map<String, Boolean>>> deleteFile(
+            @PathVariable String fileId,
+            @RequestParam String userId) {
+        log.info("Reactive REST request to delete file via SOAP: {} for user: {}", fileId, userId);
+
+        return reactiveSoapClientService.deleteFile(fileId, userId)
+                .map(success -> ResponseEntity.ok(Map.of("success", success)));
+    }
+}
@@ -1,15 +1,35 @@
 package com.fileshare.visualizer.controller;
 
+import com.fileshare.visualizer.dto.CursorPage;
 import com.fileshare.visualizer.dto.DownloadUrlDto;
+import com.fileshare.visualizer.dto.FileBatchRequest;
+import com.fileshare.visualizer.dto.FileBatchResult;
 import com.fileshare.visualizer.dto.FileInfoDto;
+import com.fileshare.visualizer.dto.FileListDelta;
+import com.fileshare.visualizer.dto.FileListFilter;
+import com.fileshare.visualizer.dto.FileListSnapshot;
+import com.fileshare.visualizer.dto.FileStatsDto;
+import com.fileshare.visualizer.dto.FileSummaryDto;
+import com.fileshare.visualizer.dto.UserFileStatsDto;
+import com.fileshare.visualizer.service.DeltaReplayBuffer;
+import com.fileshare.visualizer.service.FileBatchService;
+import com.fileshare.visualizer.service.FileExportService;
+import com.fileshare.visualizer.service.FileMetadataService;
+import com.fileshare.visualizer.service.FileNotificationService;
+import com.fileshare.visualizer.service.FileStatisticsService;
 import com.fileshare.visualizer.service.SoapClientService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 @RestController
@@ -19,6 +39,133 @@ import java.util.Map;
 public class VisualizerController {
 
     private final SoapClientService soapClientService;
+    private final FileNotificationService fileNotificationService;
+    private final DeltaReplayBuffer deltaReplayBuffer;
+    private final FileMetadataService fileMetadataService;
+    private final FileExportService fileExportService;
+    private final FileBatchService fileBatchService;
+    private final FileStatisticsService fileStatisticsService;
+
+    @GetMapping("/files")
+    public ResponseEntity<CursorPage<FileSummaryDto>> getFiles(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String contentType,
+            @RequestParam(required = false) String userId) {
+        log.info("REST request to get files page");
+
+        FileListFilter filter = FileListFilter.builder()
+                .status(status)
+                .contentType(contentType)
+                .userId(userId)
+                .build();
+        try {
+            return ResponseEntity.ok(fileMetadataService.getFilesPage(cursor, size, filter));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/files/search")
+    public ResponseEntity<List<FileSummaryDto>> searchFiles(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String userId) {
+        log.debug("REST request to search files: {}", q);
+
+        FileListFilter filter = FileListFilter.builder()
+                .status(status)
+                .userId(userId)
+                .build();
+        // 503 mientras el índice en memoria no está cargado
+        return fileMetadataService.searchFiles(q, limit, filter)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    @GetMapping("/files/export")
+    public ResponseEntity<StreamingResponseBody> exportFiles(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        log.info("REST request to export all files metadata as {} (gzip: {})", format, gzip);
+
+        FileExportService.Format exportFormat;
+        try {
+            exportFormat = FileExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192);
+                fileExportService.export(exportFormat, gzipOut);
+                gzipOut.finish();
+            } else {
+                fileExportService.export(exportFormat, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"file_metadata." + exportFormat.getExtension() + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("/files/snapshot")
+    public ResponseEntity<FileListSnapshot> getFilesSnapshot(@RequestParam(required = false) Integer limit) {
+        log.info("REST request to get files list snapshot");
+
+        return ResponseEntity.ok(fileNotificationService.getSnapshot(limit));
+    }
+
+    @GetMapping("/files/deltas")
+    public ResponseEntity<List<FileListDelta>> getFilesDeltas(@RequestParam long since,
+                                                              @RequestParam(required = false) String epoch) {
+        log.debug("REST request to replay files deltas since: {} (epoch {})", since, epoch);
+
+        // 410 Gone: el sequence ya fue desalojado o es de otro epoch, el cliente debe pedir el snapshot
+        return deltaReplayBuffer.since(epoch, since)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.GONE).build());
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<FileStatsDto> getStats() {
+        log.debug("REST request to get file statistics");
+
+        // 503 hasta que termina la primera agregación
+        return fileStatisticsService.getStats()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    @GetMapping("/stats/users/{userId}")
+    public ResponseEntity<UserFileStatsDto> getUserStats(@PathVariable String userId) {
+        log.debug("REST request to get file statistics for user: {}", userId);
+
+        return fileStatisticsService.getUserStats(userId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    @PostMapping("/files/batch")
+    public ResponseEntity<List<FileBatchResult>> getFilesBatch(@RequestBody FileBatchRequest request) {
+        log.info("REST request to get files batch via SOAP: {} ids",
+                request.getFileIds() != null ? request.getFileIds().size() : 0);
+
+        try {
+            return ResponseEntity.ok(fileBatchService.getFiles(request.getFileIds()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 
     @GetMapping("/files/{fileId}")
     public ResponseEntity<FileInfoDto> getFile(@PathVariable String fileId) {
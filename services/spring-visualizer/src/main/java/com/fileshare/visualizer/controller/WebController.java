@@ -1,7 +1,10 @@
 package com.fileshare.visualizer.controller;
 
+import com.fileshare.visualizer.dto.CursorPage;
 import com.fileshare.visualizer.dto.FileInfoDto;
+import com.fileshare.visualizer.dto.FileSummaryDto;
 import com.fileshare.visualizer.service.FileMetadataService;
+import com.fileshare.visualizer.service.FileStatisticsService;
 import com.fileshare.visualizer.service.SoapClientService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,26 +23,25 @@ public class WebController {
 
     private final SoapClientService soapClientService;
     private final FileMetadataService fileMetadataService;
+    private final FileStatisticsService fileStatisticsService;
 
     @GetMapping("/")
-    public String index(Model model) {
+    public String index(@RequestParam(required = false) String cursor,
+                        @RequestParam(required = false) Integer size,
+                        Model model) {
         log.info("Web request to show unified dashboard");
-        
-        List<FileInfoDto> files = fileMetadataService.getAllFiles();
-        model.addAttribute("files", files);
-        model.addAttribute("totalFiles", files.size());
-        
+
+        addFilesPage(model, cursor, size);
         return "index";
     }
 
     @GetMapping("/dashboard")
-    public String dashboard(Model model) {
+    public String dashboard(@RequestParam(required = false) String cursor,
+                            @RequestParam(required = false) Integer size,
+                            Model model) {
         log.info("Web request to show all files dashboard");
-        
-        List<FileInfoDto> files = fileMetadataService.getAllFiles();
-        model.addAttribute("files", files);
-        model.addAttribute("totalFiles", files.size());
-        
+
+        addFilesPage(model, cursor, size);
         return "dashboard";
     }
 
@@ -63,4 +65,23 @@ public class WebController {
         
         return "file-detail";
     }
+
+    private void addFilesPage(Model model, String cursor, Integer size) {
+        CursorPage<FileSummaryDto> page;
+        try {
+            page = fileMetadataService.getFilesPage(cursor, size);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid cursor, showing first page: {}", e.getMessage());
+            cursor = null;
+            page = fileMetadataService.getFilesPage(null, size);
+        }
+
+        model.addAttribute("files", page.getItems());
+        model.addAttribute("totalFiles", fileStatisticsService.getTotalFiles()
+                .orElseGet(fileMetadataService::countFiles));
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("pageSize", page.getSize());
+        // Solo la primera página se mantiene en vivo con los deltas
+        model.addAttribute("firstPage", cursor == null || cursor.isBlank());
+    }
 }
@@ -0,0 +1,16 @@
+package com.fileshare.visualizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileBatchRequest {
+    private List<String> fileIds;
+}
@@ -0,0 +1,19 @@
+package com.fileshare.visualizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de un fileId dentro de una consulta por lotes: file o error, nunca ambos.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileBatchResult {
+    private String fileId;
+    private FileInfoDto file;
+    private String error;
+}
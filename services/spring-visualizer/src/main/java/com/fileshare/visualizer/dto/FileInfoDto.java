@@ -8,7 +8,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class FileInfoDto {
@@ -23,4 +23,7 @@ public class FileInfoDto {
     private String status;
     private LocalDateTime createdAt;
     private LocalDateTime processedAt;
+
+    /** true si viene del último resultado conocido porque soap-service no está disponible. */
+    private boolean stale;
 }
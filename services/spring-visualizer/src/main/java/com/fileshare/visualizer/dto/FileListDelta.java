@@ -0,0 +1,28 @@
+package com.fileshare.visualizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Cambio incremental sobre la lista de archivos enviado por /topic/files-delta.
+ * El cliente aplica los deltas en orden de sequence; si detecta un hueco, o un epoch distinto
+ * del de su snapshot, pide un snapshot.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileListDelta {
+    private String epoch; // secuencia a la que pertenece sequence; cambia en cada arranque
+    private long sequence;
+    private String eventType; // INSERT, UPDATE o DELETE
+    private List<FileSummaryDto> upserted;
+    private List<String> removed; // fileIds
+    private boolean resyncRequired; // el cambio no se pudo expresar como delta
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,22 @@
+package com.fileshare.visualizer.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Filtros opcionales de la lista de archivos; un campo null no filtra.
+ */
+@Value
+@Builder(toBuilder = true)
+public class FileListFilter {
+
+    public static final FileListFilter NONE = FileListFilter.builder().build();
+
+    String status;
+    String contentType;
+    String userId;
+
+    public boolean isEmpty() {
+        return status == null && contentType == null && userId == null;
+    }
+}
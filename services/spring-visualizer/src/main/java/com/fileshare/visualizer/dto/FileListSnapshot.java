@@ -0,0 +1,23 @@
+package com.fileshare.visualizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página más reciente de archivos junto con el último sequence de delta que ya refleja
+ * y el epoch de esa secuencia de deltas.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileListSnapshot {
+    private String epoch;
+    private long sequence;
+    private List<FileSummaryDto> files;
+    private long totalFiles;
+}
@@ -0,0 +1,30 @@
+package com.fileshare.visualizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Agregados de file_metadata mantenidos en memoria por FileStatisticsService.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileStatsDto {
+    private long totalFiles;
+    private long totalBytes;
+    private long encryptedFiles;
+    private long plaintextFiles;
+    private int users;
+    private Map<String, Long> byStatus;
+    private Map<String, Long> byContentType;
+    /** Última vez que los contadores se recalcularon desde MongoDB. */
+    private LocalDateTime reconciledAt;
+    /** true si hubo cambios que no se pudieron aplicar y falta una reconciliación. */
+    private boolean approximate;
+}
@@ -0,0 +1,26 @@
+package com.fileshare.visualizer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila de las listas de archivos (dashboard, snapshot y deltas). Solo lleva lo que se
+ * pinta en la tabla; el detalle completo es {@link FileInfoDto}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileSummaryDto {
+    private String fileId;
+    private String userId;
+    private String fileName;
+    private String contentType;
+    private Long fileSize;
+    private String status;
+    private LocalDateTime createdAt;
+}
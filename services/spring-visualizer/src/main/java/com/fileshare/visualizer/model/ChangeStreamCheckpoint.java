@@ -0,0 +1,35 @@
+package com.fileshare.visualizer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * Último resume token procesado del change stream de file_metadata.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "visualizer_checkpoints")
+public class ChangeStreamCheckpoint {
+    @Id
+    private String id;
+
+    /** Resume token serializado como JSON extendido. */
+    @Field("resumeToken")
+    private String resumeToken;
+
+    /** Momento en que se procesó el último evento; acota el resync si el token expira. */
+    @Field("lastEventAt")
+    private LocalDateTime lastEventAt;
+
+    @Field("updatedAt")
+    private LocalDateTime updatedAt;
+}
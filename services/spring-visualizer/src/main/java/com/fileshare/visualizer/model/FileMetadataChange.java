@@ -0,0 +1,38 @@
+package com.fileshare.visualizer.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cambio sobre un documento de file_metadata recibido desde el change stream de MongoDB.
+ * Se publica como evento de aplicación para que cada servicio interesado reaccione.
+ */
+@Value
+@Builder
+public class FileMetadataChange {
+
+    public enum Type { INSERT, UPDATE, DELETE }
+
+    Type type;
+
+    /** _id del documento en MongoDB (hex del ObjectId). */
+    String documentId;
+
+    /** Estado actual del documento; null en DELETE. */
+    FileMetadata current;
+
+    /** Estado anterior (pre-image) cuando MongoDB lo provee; puede ser null. */
+    FileMetadata previous;
+
+    LocalDateTime timestamp;
+
+    /** Resume token del evento como JSON extendido; null en los republicados por un resync. */
+    String resumeToken;
+
+    /** Documento más reciente disponible: el actual o, en un DELETE, el anterior. */
+    public FileMetadata latest() {
+        return current != null ? current : previous;
+    }
+}
@@ -0,0 +1,9 @@
+package com.fileshare.visualizer.repository;
+
+import com.fileshare.visualizer.model.ChangeStreamCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChangeStreamCheckpointRepository extends MongoRepository<ChangeStreamCheckpoint, String> {
+}
@@ -2,11 +2,21 @@ package com.fileshare.visualizer.repository;
 
 import com.fileshare.visualizer.model.FileMetadata;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReadPreference;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface FileMetadataRepository extends MongoRepository<FileMetadata, String> {
-    List<FileMetadata> findAllByOrderByCreatedAtDesc();
+public interface FileMetadataRepository extends MongoRepository<FileMetadata, String>, FileMetadataRepositoryCustom {
+    // fileId y userId se guardan como string: se consulta con el UUID ya normalizado a texto
+    @ReadPreference("secondaryPreferred")
+    @Query("{ 'fileId': ?0 }")
+    Optional<FileMetadata> findByFileIdText(String fileId);
+
+    @ReadPreference("secondaryPreferred")
+    @Query(value = "{ 'userId': ?0 }", sort = "{ 'createdAt': -1 }")
+    List<FileMetadata> findByUserIdTextNewestFirst(String userId);
 }
@@ -0,0 +1,21 @@
+package com.fileshare.visualizer.repository;
+
+import com.fileshare.visualizer.dto.FileListFilter;
+import com.fileshare.visualizer.model.FileMetadata;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface FileMetadataRepositoryCustom {
+
+    /**
+     * Página ordenada por (createdAt, _id) descendente que empieza justo después de la
+     * clave indicada. Con {@code createdAt} null devuelve la primera página.
+     * Solo se leen los campos indicados en {@code fields} (y _id).
+     */
+    List<FileMetadata> findPageAfter(LocalDateTime createdAt, String id, FileListFilter filter, int limit,
+                                     String... fields);
+
+    /** Conteo a partir de los metadatos de la colección, sin recorrerla. */
+    long estimatedCount();
+}
@@ -0,0 +1,53 @@
+package com.fileshare.visualizer.repository;
+
+import com.fileshare.visualizer.dto.FileListFilter;
+import com.fileshare.visualizer.model.FileMetadata;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class FileMetadataRepositoryImpl implements FileMetadataRepositoryCustom {
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt", "_id");
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<FileMetadata> findPageAfter(LocalDateTime createdAt, String id, FileListFilter filter, int limit,
+                                            String... fields) {
+        Query query = new Query().with(NEWEST_FIRST).limit(limit);
+        query.fields().include(fields);
+
+        if (filter.getStatus() != null) {
+            query.addCriteria(Criteria.where("status").is(filter.getStatus()));
+        }
+        if (filter.getContentType() != null) {
+            query.addCriteria(Criteria.where("contentType").is(filter.getContentType()));
+        }
+        if (filter.getUserId() != null) {
+            // userId se guarda como texto, no como UUID binario
+            query.addCriteria(Criteria.where("userId").is(filter.getUserId()));
+        }
+
+        if (createdAt != null) {
+            // Keyset: (createdAt, _id) < (cursor.createdAt, cursor.id)
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("createdAt").lt(createdAt),
+                    Criteria.where("createdAt").is(createdAt).and("_id").lt(new ObjectId(id))));
+        }
+
+        return mongoTemplate.find(query, FileMetadata.class);
+    }
+
+    @Override
+    public long estimatedCount() {
+        return mongoTemplate.estimatedCount(FileMetadata.class);
+    }
+}
@@ -0,0 +1,94 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.dto.FileListDelta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Buffer circular acotado con los últimos deltas enviados, indexado por sequence.
+ * Permite que un cliente que se reconecta recupere solo los cambios que perdió.
+ * <p>
+ * Un único escritor (FileNotificationService, bajo su lock de envío) y lectores sin lock:
+ * cada slot guarda su propio sequence, así que un slot sobrescrito se detecta como fallo.
+ * <p>
+ * Los sequence empiezan en 1 en cada proceso. El epoch, aleatorio por arranque, distingue
+ * las secuencias: un cliente que trae uno distinto (reinicio, despliegue, otra réplica)
+ * no puede empalmar estos deltas con su estado y necesita un snapshot.
+ */
+@Slf4j
+@Component
+public class DeltaReplayBuffer {
+
+    private final AtomicReferenceArray<FileListDelta> slots;
+    private final int mask;
+    private final String epoch = UUID.randomUUID().toString();
+    private volatile long latestSequence;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public DeltaReplayBuffer(@Value("${visualizer.replay.capacity:1024}") int capacity, MeterRegistry meterRegistry) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+
+        this.hits = Counter.builder("visualizer.replay.requests").tag("result", "hit")
+                .description("Reconnections served from the replay buffer").register(meterRegistry);
+        this.misses = Counter.builder("visualizer.replay.requests").tag("result", "miss")
+                .description("Reconnections that required a full snapshot").register(meterRegistry);
+        Gauge.builder("visualizer.replay.buffer.size", this, DeltaReplayBuffer::size)
+                .description("Deltas currently held in the replay buffer").register(meterRegistry);
+        Gauge.builder("visualizer.replay.buffer.capacity", slots, AtomicReferenceArray::length)
+                .register(meterRegistry);
+
+        log.info("Delta replay buffer initialized with capacity {}", size);
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public void append(FileListDelta delta) {
+        slots.set((int) (delta.getSequence() & mask), delta);
+        latestSequence = delta.getSequence();
+    }
+
+    /**
+     * Deltas con sequence mayor que {@code lastSeen}, en orden. Vacío si el cliente
+     * ya está al día; {@code Optional.empty()} si alguno ya fue desalojado o si
+     * {@code lastEpoch} no es el de este proceso.
+     */
+    public Optional<List<FileListDelta>> since(String lastEpoch, long lastSeen) {
+        long latest = latestSequence;
+        if (!epoch.equals(lastEpoch) || lastSeen > latest || latest - lastSeen > slots.length()) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        List<FileListDelta> missed = new ArrayList<>((int) (latest - lastSeen));
+        for (long seq = lastSeen + 1; seq <= latest; seq++) {
+            FileListDelta delta = slots.get((int) (seq & mask));
+            if (delta == null || delta.getSequence() != seq) {
+                misses.increment();
+                return Optional.empty();
+            }
+            missed.add(delta);
+        }
+        hits.increment();
+        return Optional.of(missed);
+    }
+
+    private double size() {
+        return Math.min(latestSequence, slots.length());
+    }
+}
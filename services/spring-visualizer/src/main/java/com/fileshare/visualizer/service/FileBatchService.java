@@ -0,0 +1,139 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.dto.FileBatchResult;
+import com.fileshare.visualizer.dto.FileInfoDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resuelve varios fileId en paralelo contra {@link SoapClientService}, un hilo virtual
+ * por id. Un semáforo compartido por todos los lotes limita las llamadas SOAP simultáneas
+ * para no agotar el pool de conexiones hacia soap-service; los aciertos de caché no lo usan.
+ * <p>
+ * Al vencer batch.timeout se interrumpen los hilos que siguen en curso: la espera por el
+ * semáforo o por la llamada SOAP se abandonan y el permiso se libera, en lugar de seguir
+ * ocupado por una respuesta que ya nadie espera. La llamada en sí no se corta, porque
+ * {@link SingleFlight} la comparte con otras peticiones del mismo fileId; termina por su
+ * cuenta y sigue acotada por el limitador de concurrencia de SOAP.
+ */
+@Slf4j
+@Service
+public class FileBatchService {
+
+    private final SoapClientService soapClientService;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxIds;
+    private final Duration timeout;
+
+    public FileBatchService(SoapClientService soapClientService,
+                            @Value("${visualizer.batch.max-ids:100}") int maxIds,
+                            @Value("${visualizer.batch.max-concurrency:16}") int maxConcurrency,
+                            @Value("${visualizer.batch.timeout:15s}") Duration timeout) {
+        this.soapClientService = soapClientService;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("file-batch-", 0).factory());
+        this.permits = new Semaphore(maxConcurrency);
+        this.maxIds = maxIds;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Devuelve un resultado por id distinto, en el orden recibido. Los ids que no
+     * terminan dentro de batch.timeout se devuelven con error.
+     *
+     * @throws IllegalArgumentException si la lista está vacía o supera batch.max-ids
+     */
+    public List<FileBatchResult> getFiles(List<String> fileIds) {
+        Set<String> ids = new LinkedHashSet<>();
+        if (fileIds != null) {
+            fileIds.stream().filter(id -> id != null && !id.isBlank()).forEach(ids::add);
+        }
+        if (ids.isEmpty() || ids.size() > maxIds) {
+            throw new IllegalArgumentException("Between 1 and " + maxIds + " file ids are required");
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<Future<FileBatchResult>> futures = new ArrayList<>(ids.size());
+        for (String fileId : ids) {
+            futures.add(executor.submit(() -> lookup(fileId, deadline)));
+        }
+
+        List<FileBatchResult> results = new ArrayList<>(futures.size());
+        int i = 0;
+        for (String fileId : ids) {
+            results.add(await(fileId, futures.get(i++), deadline));
+        }
+        return results;
+    }
+
+    private FileBatchResult lookup(String fileId, long deadline) {
+        FileInfoDto cached = soapClientService.getCachedFile(fileId);
+        if (cached != null) {
+            return found(fileId, cached);
+        }
+        try {
+            if (!permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return failed(fileId, "Timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(fileId, "Interrupted");
+        }
+        try {
+            return found(fileId, soapClientService.getFile(fileId));
+        } finally {
+            permits.release();
+        }
+    }
+
+    private FileBatchResult found(String fileId, FileInfoDto file) {
+        if (file == null) {
+            return failed(fileId, "Not found");
+        }
+        if ("ERROR".equals(file.getStatus())) {
+            return failed(fileId, file.getDescription());
+        }
+        return FileBatchResult.builder().fileId(fileId).file(file).build();
+    }
+
+    private FileBatchResult await(String fileId, Future<FileBatchResult> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Interrumpe el hilo virtual: corta su espera y libera el permiso
+            future.cancel(true);
+            return failed(fileId, "Timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return failed(fileId, "Interrupted");
+        } catch (ExecutionException e) {
+            log.warn("Batch lookup failed for fileId {}: {}", fileId, e.getCause().getMessage());
+            return failed(fileId, e.getCause().getMessage());
+        }
+    }
+
+    private FileBatchResult failed(String fileId, String error) {
+        return FileBatchResult.builder().fileId(fileId).error(error).build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,371 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.model.ChangeStreamCheckpoint;
+import com.fileshare.visualizer.model.FileMetadata;
+import com.fileshare.visualizer.model.FileMetadataChange;
+import com.fileshare.visualizer.repository.ChangeStreamCheckpointRepository;
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Escucha el change stream de file_metadata (replica set rs0) y publica cada
+ * insert, update, replace o delete como un {@link FileMetadataChange}.
+ * Sustituye al polling de repository.count(): los cambios llegan empujados por MongoDB.
+ * <p>
+ * El resume token se persiste en visualizer_checkpoints para que un reinicio continúe
+ * donde quedó. Si el token ya salió del oplog se hace un resync acotado de los
+ * documentos creados o procesados desde el último evento.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileChangeStreamListener {
+
+    private static final List<String> WATCHED_OPERATIONS = List.of("insert", "update", "replace", "delete");
+
+    // ChangeStreamFatalError, ChangeStreamHistoryLost, InvalidResumeToken
+    private static final Set<Integer> RESUME_LOST_CODES = Set.of(280, 286, 260);
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeStreamCheckpointRepository checkpointRepository;
+
+    @Value("${visualizer.change-stream.enabled:true}")
+    private boolean enabled;
+
+    @Value("${visualizer.change-stream.pre-images:true}")
+    private boolean preImages;
+
+    @Value("${visualizer.change-stream.max-await-ms:1000}")
+    private long maxAwaitMs;
+
+    @Value("${visualizer.change-stream.reconnect-delay-ms:2000}")
+    private long reconnectDelayMs;
+
+    @Value("${visualizer.change-stream.checkpoint-id:${spring.application.name}}")
+    private String checkpointId;
+
+    @Value("${visualizer.change-stream.checkpoint-interval-ms:1000}")
+    private long checkpointIntervalMs;
+
+    @Value("${visualizer.change-stream.resync-limit:500}")
+    private int resyncLimit;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private volatile boolean running;
+    private volatile BsonDocument resumeToken;
+    private Thread worker;
+
+    private LocalDateTime lastEventAt;
+    private LocalDateTime pendingResyncSince;
+    private boolean checkpointDirty;
+    private long lastCheckpointMillis;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("MongoDB change stream listener disabled");
+            return;
+        }
+        if (preImages) {
+            enablePreImages();
+        }
+        loadCheckpoint();
+        running = true;
+        // El hilo pasa casi todo el tiempo bloqueado en tryNext: en modo virtual no ocupa un hilo del sistema
+        worker = virtualThreads
+                ? Thread.ofVirtual().name("file-change-stream").unstarted(this::run)
+                : Thread.ofPlatform().name("file-change-stream").daemon(true).unstarted(this::run);
+        worker.start();
+        log.info("MongoDB change stream listener started on collection {}", collectionName());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(reconnectDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openCursor(resumeToken)) {
+                // El cursor nuevo ya está abierto: lo que cambie durante el resync también llega por el stream
+                if (pendingResyncSince != null) {
+                    resync(pendingResyncSince);
+                    pendingResyncSince = null;
+                }
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        dispatch(change);
+                        lastEventAt = LocalDateTime.now();
+                    }
+                    BsonDocument token = cursor.getResumeToken();
+                    if (token != null && !token.equals(resumeToken)) {
+                        resumeToken = token;
+                        checkpointDirty = true;
+                    }
+                    saveCheckpoint(false);
+                }
+            } catch (MongoServerException e) {
+                if (!running) {
+                    break;
+                }
+                if (resumeToken != null && RESUME_LOST_CODES.contains(e.getCode())) {
+                    log.warn("Resume token no longer available in the oplog ({}), falling back to bounded resync",
+                            e.getCode());
+                    resumeToken = null;
+                    pendingResyncSince = lastEventAt;
+                } else {
+                    log.warn("Change stream interrupted, reconnecting in {} ms: {}", reconnectDelayMs, e.getMessage());
+                    sleepQuietly(reconnectDelayMs);
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Change stream interrupted, reconnecting in {} ms: {}", reconnectDelayMs, e.getMessage());
+                sleepQuietly(reconnectDelayMs);
+            } catch (RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                log.error("Unexpected error in change stream listener", e);
+                sleepQuietly(reconnectDelayMs);
+            }
+        }
+        saveCheckpoint(true);
+        log.info("MongoDB change stream listener stopped");
+    }
+
+    /**
+     * Entrega a {@code consumer}, sin publicarlos, los cambios posteriores a {@code resumeToken}
+     * hasta alcanzar el presente. Devuelve el resume token en el que se detuvo, que cubre
+     * también los eventos descartados, o null si el token ya salió del oplog.
+     */
+    public String replaySince(String resumeToken, Consumer<FileMetadataChange> consumer) {
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor =
+                     openCursor(BsonDocument.parse(resumeToken))) {
+            ChangeStreamDocument<Document> change;
+            while ((change = cursor.tryNext()) != null) {
+                FileMetadataChange event = toChange(change);
+                if (event != null) {
+                    consumer.accept(event);
+                }
+            }
+            BsonDocument reached = cursor.getResumeToken();
+            return reached != null ? reached.toJson() : resumeToken;
+        } catch (MongoServerException e) {
+            if (RESUME_LOST_CODES.contains(e.getCode())) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /** Posición actual del change stream, o null si no se puede obtener. */
+    public String currentResumeToken() {
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openCursor(null)) {
+            BsonDocument token = cursor.getResumeToken();
+            return token != null ? token.toJson() : null;
+        } catch (MongoException e) {
+            log.debug("Could not read current change stream position: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openCursor(BsonDocument resumeToken) {
+        List<Bson> pipeline = List.of(Aggregates.match(Filters.in("operationType", WATCHED_OPERATIONS)));
+
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(collectionName())
+                .watch(pipeline)
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(maxAwaitMs, TimeUnit.MILLISECONDS);
+
+        if (preImages) {
+            stream = stream.fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        }
+        if (resumeToken != null) {
+            stream = stream.resumeAfter(resumeToken);
+        }
+        return stream.cursor();
+    }
+
+    private void dispatch(ChangeStreamDocument<Document> change) {
+        FileMetadataChange event = toChange(change);
+        if (event == null) {
+            return;
+        }
+
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            log.error("Error handling change for document {}: {}", event.getDocumentId(), e.getMessage());
+        }
+    }
+
+    private FileMetadataChange toChange(ChangeStreamDocument<Document> change) {
+        FileMetadataChange.Type type = switch (change.getOperationType()) {
+            case INSERT -> FileMetadataChange.Type.INSERT;
+            case UPDATE, REPLACE -> FileMetadataChange.Type.UPDATE;
+            case DELETE -> FileMetadataChange.Type.DELETE;
+            default -> null;
+        };
+        if (type == null) {
+            return null;
+        }
+
+        return FileMetadataChange.builder()
+                .type(type)
+                .documentId(documentId(change.getDocumentKey()))
+                .current(toMetadata(change.getFullDocument()))
+                .previous(toMetadata(change.getFullDocumentBeforeChange()))
+                .timestamp(LocalDateTime.now())
+                .resumeToken(change.getResumeToken() != null ? change.getResumeToken().toJson() : null)
+                .build();
+    }
+
+    /**
+     * Republica como UPDATE los documentos creados o procesados desde {@code since},
+     * como máximo resync-limit. Los borrados ocurridos en el hueco no se recuperan.
+     */
+    private void resync(LocalDateTime since) {
+        if (since == null) {
+            log.warn("No previous event time recorded, skipping resync");
+            return;
+        }
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("createdAt").gte(since),
+                Criteria.where("processedAt").gte(since)))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .limit(resyncLimit);
+
+        List<FileMetadata> changed = mongoTemplate.find(query, FileMetadata.class);
+        log.info("Resyncing {} documents changed since {}", changed.size(), since);
+
+        for (FileMetadata metadata : changed) {
+            eventPublisher.publishEvent(FileMetadataChange.builder()
+                    .type(FileMetadataChange.Type.UPDATE)
+                    .documentId(metadata.getId())
+                    .current(metadata)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+        lastEventAt = LocalDateTime.now();
+    }
+
+    private void loadCheckpoint() {
+        try {
+            checkpointRepository.findById(checkpointId).ifPresent(checkpoint -> {
+                if (checkpoint.getResumeToken() != null) {
+                    resumeToken = BsonDocument.parse(checkpoint.getResumeToken());
+                }
+                lastEventAt = checkpoint.getLastEventAt();
+                log.info("Resuming change stream from checkpoint '{}' saved at {}",
+                        checkpointId, checkpoint.getUpdatedAt());
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not load change stream checkpoint '{}': {}", checkpointId, e.getMessage());
+        }
+    }
+
+    /**
+     * Guarda el resume token como mucho una vez por checkpoint-interval-ms para no
+     * escribir en MongoDB por cada evento recibido.
+     */
+    private void saveCheckpoint(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!checkpointDirty || resumeToken == null
+                || (!force && now - lastCheckpointMillis < checkpointIntervalMs)) {
+            return;
+        }
+        try {
+            checkpointRepository.save(ChangeStreamCheckpoint.builder()
+                    .id(checkpointId)
+                    .resumeToken(resumeToken.toJson())
+                    .lastEventAt(lastEventAt)
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+            checkpointDirty = false;
+        } catch (RuntimeException e) {
+            log.warn("Could not save change stream checkpoint: {}", e.getMessage());
+        }
+        lastCheckpointMillis = now;
+    }
+
+    private FileMetadata toMetadata(Document document) {
+        return document != null ? mongoTemplate.getConverter().read(FileMetadata.class, document) : null;
+    }
+
+    private String documentId(BsonDocument key) {
+        if (key == null || !key.containsKey("_id")) {
+            return null;
+        }
+        BsonValue id = key.get("_id");
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.toString();
+    }
+
+    /**
+     * Habilita pre-images en la colección (MongoDB 6+) para que los DELETE traigan
+     * el documento eliminado. Si el usuario no tiene permisos se continúa sin ellas.
+     */
+    private void enablePreImages() {
+        try {
+            mongoTemplate.executeCommand(new Document("collMod", collectionName())
+                    .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+        } catch (RuntimeException e) {
+            log.warn("Could not enable change stream pre-images on {}: {}", collectionName(), e.getMessage());
+        }
+    }
+
+    private String collectionName() {
+        return mongoTemplate.getCollectionName(FileMetadata.class);
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
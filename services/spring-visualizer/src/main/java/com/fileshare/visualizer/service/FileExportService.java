@@ -0,0 +1,143 @@
+package com.fileshare.visualizer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fileshare.visualizer.model.FileMetadata;
+import com.mongodb.ReadPreference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exporta todo file_metadata recorriendo un cursor de MongoDB y escribiendo cada documento
+ * directamente en la respuesta. La memoria usada no depende del tamaño de la colección:
+ * si el cliente lee despacio, la escritura bloquea y el cursor deja de avanzar.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String[] CSV_HEADER = {
+            "id", "fileId", "userId", "originalFileName", "contentType", "fileSize", "hash",
+            "isEncrypted", "description", "status", "createdAt", "processedAt", "minioObjectKey"
+    };
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${visualizer.export.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Escribe todos los documentos en {@code out} y devuelve cuántos se exportaron.
+     * No cierra {@code out}.
+     */
+    public long export(Format format, OutputStream out) throws IOException {
+        // Una exportación no necesita leer del primario
+        Query query = new Query()
+                .cursorBatchSize(batchSize)
+                .withReadPreference(ReadPreference.secondaryPreferred());
+
+        long count;
+        try (Stream<FileMetadata> documents = mongoTemplate.stream(query, FileMetadata.class)) {
+            count = switch (format) {
+                case NDJSON -> writeNdjson(documents.iterator(), out);
+                case CSV -> writeCsv(documents.iterator(), out);
+            };
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Exported {} file metadata documents as {}", count, format);
+        return count;
+    }
+
+    private long writeNdjson(Iterator<FileMetadata> documents, OutputStream out) throws IOException {
+        long count = 0;
+        SequenceWriter writer = objectMapper.writerFor(FileMetadata.class)
+                .withRootValueSeparator("\n")
+                .writeValues(out);
+        while (documents.hasNext()) {
+            writer.write(documents.next());
+            count++;
+        }
+        writer.flush();
+        if (count > 0) {
+            out.write('\n');
+        }
+        return count;
+    }
+
+    private long writeCsv(Iterator<FileMetadata> documents, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeCsvRow(writer, (Object[]) CSV_HEADER);
+        while (documents.hasNext()) {
+            FileMetadata m = documents.next();
+            writeCsvRow(writer, m.getId(), m.getFileId(), m.getUserId(), m.getOriginalFileName(),
+                    m.getContentType(), m.getFileSize(), m.getHash(), m.getIsEncrypted(), m.getDescription(),
+                    m.getStatus(), m.getCreatedAt(), m.getProcessedAt(), m.getMinioObjectKey());
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private void writeCsvRow(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writeCsvValue(writer, values[i].toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeCsvValue(Writer writer, String value) throws IOException {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
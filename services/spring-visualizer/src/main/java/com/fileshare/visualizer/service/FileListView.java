@@ -0,0 +1,1099 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.dto.CursorPage;
+import com.fileshare.visualizer.dto.FileListFilter;
+import com.fileshare.visualizer.dto.FileSummaryDto;
+import com.fileshare.visualizer.model.FileMetadata;
+import com.fileshare.visualizer.model.FileMetadataChange;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Vista materializada en memoria de las columnas de resumen de file_metadata, para servir
+ * la lista paginada y sus filtros sin ir a MongoDB.
+ * <p>
+ * Se guarda por columnas para que el heap dependa solo del número de filas: status,
+ * contentType y userId como códigos de diccionario, fileId y _id como primitivos (UUID en
+ * dos long, ObjectId en int + long), tamaños y fechas en long[] y los nombres en UTF-8
+ * dentro de un único byte[]. Un array de filas ordenado por (createdAt, _id) da el orden
+ * de la lista y un índice hash abierto localiza cada _id. Sobre el nombre y la descripción
+ * se mantiene además un {@link FileSearchIndex} para la búsqueda del dashboard.
+ * <p>
+ * Se carga al arrancar y cada reload-interval, y entre medias se actualiza con cada
+ * {@link FileMetadataChange}. Mientras no está cargada, o si supera max-rows o encuentra
+ * un _id que no es ObjectId, {@link #page} devuelve vacío y la consulta va a MongoDB;
+ * {@link #search} también devuelve vacío, y la búsqueda no está disponible.
+ * <p>
+ * Si al arrancar se restaura un snapshot ({@link VisualizerSnapshotService}) se sirve
+ * desde él de inmediato y solo se leen del change stream los cambios posteriores a su
+ * resume token; la carga completa queda para cuando el token ya no está en el oplog. Esos
+ * mismos cambios se pasan a {@link FileStatisticsService} para que ponga al día sus agregados.
+ */
+@Slf4j
+@Service
+public class FileListView {
+
+    private final MongoTemplate mongoTemplate;
+    private final FileChangeStreamListener changeStream;
+    private final FileStatisticsService statistics;
+    private final boolean enabled;
+    private final int maxRows;
+    private final int initialCapacity;
+    private final Duration reloadInterval;
+    private final long retryDelayMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Protegidos por lock: columnas servidas y cambios recibidos durante una recarga
+    private Columns columns;
+    private List<FileMetadataChange> pending;
+    // Cambios en vivo retenidos mientras se reproduce el change stream desde un snapshot
+    private List<FileMetadataChange> heldDuringCatchUp;
+    // Resume token del último cambio procesado; solo es fiable con caughtUp
+    private String resumeToken;
+    private boolean caughtUp;
+
+    private volatile boolean running;
+    private volatile int rows;
+    private volatile long estimatedBytes;
+    private volatile int searchTerms;
+    private Thread loader;
+
+    public FileListView(MongoTemplate mongoTemplate,
+                        FileChangeStreamListener changeStream,
+                        FileStatisticsService statistics,
+                        MeterRegistry meterRegistry,
+                        @Value("${visualizer.view.enabled:true}") boolean enabled,
+                        @Value("${visualizer.view.max-rows:2000000}") int maxRows,
+                        @Value("${visualizer.view.initial-capacity:65536}") int initialCapacity,
+                        @Value("${visualizer.view.reload-interval:6h}") Duration reloadInterval,
+                        @Value("${visualizer.view.retry-delay-ms:10000}") long retryDelayMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.changeStream = changeStream;
+        this.statistics = statistics;
+        this.enabled = enabled;
+        this.maxRows = maxRows;
+        this.initialCapacity = Math.min(initialCapacity, maxRows);
+        this.reloadInterval = reloadInterval;
+        this.retryDelayMs = retryDelayMs;
+
+        Gauge.builder("visualizer.view.rows", this, v -> v.rows)
+                .description("Files held by the in-memory list view").register(meterRegistry);
+        Gauge.builder("visualizer.view.heap", this, v -> v.estimatedBytes)
+                .description("Estimated heap used by the in-memory list view")
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("visualizer.view.search.terms", this, v -> v.searchTerms)
+                .description("Distinct terms in the file name search index").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("In-memory file list view disabled, list queries go to MongoDB");
+            return;
+        }
+        running = true;
+        loader = Thread.ofVirtual().name("file-list-view").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (loader != null) {
+            loader.interrupt();
+        }
+    }
+
+    /**
+     * Página más reciente primero después de {@code after}, o vacío si la vista no está
+     * disponible. Un filtro con un valor que la vista no conoce devuelve una página vacía.
+     */
+    Optional<CursorPage<FileSummaryDto>> page(PageCursor after, int limit, FileListFilter filter) {
+        lock.readLock().lock();
+        try {
+            if (columns == null) {
+                return Optional.empty();
+            }
+            return Optional.of(columns.page(after, limit, filter));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Las {@code limit} coincidencias más recientes de una búsqueda incremental, o vacío si
+     * la vista no está disponible. Ver {@link FileSearchIndex} para cómo se parte la consulta.
+     */
+    Optional<List<FileSummaryDto>> search(String query, int limit, FileListFilter filter) {
+        List<String> words = FileSearchIndex.words(query);
+        lock.readLock().lock();
+        try {
+            if (columns == null) {
+                return Optional.empty();
+            }
+            return Optional.of(columns.search(words, limit, filter));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Se ejecuta antes que el resto de listeners para que un snapshot pedido tras recibir
+     * un delta ya incluya el cambio.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onFileChange(FileMetadataChange change) {
+        if (!running) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            }
+            if (heldDuringCatchUp != null) {
+                // Se aplica al terminar la reproducción, que puede traer cambios anteriores a este
+                heldDuringCatchUp.add(change);
+            } else if (columns != null) {
+                apply(columns, change);
+                if (caughtUp) {
+                    advance(change.getResumeToken());
+                }
+            }
+        } catch (RuntimeException e) {
+            disable(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copia de las filas vivas en orden para {@link VisualizerSnapshotService}; vacío si la
+     * vista no está cargada o aún se está poniendo al día tras una restauración.
+     */
+    Optional<Snapshot> snapshot() {
+        lock.readLock().lock();
+        try {
+            if (columns == null || !caughtUp || pending != null) {
+                return Optional.empty();
+            }
+            return Optional.of(columns.snapshot(resumeToken));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sirve desde un snapshot hasta que {@link #start()} lo ponga al día. Devuelve false si
+     * la vista está deshabilitada y no se restaura.
+     */
+    boolean restore(Snapshot snapshot) {
+        if (!enabled) {
+            return false;
+        }
+        Columns restored = Columns.restore(snapshot,
+                Math.max(initialCapacity, snapshot.rows() + (snapshot.rows() >> 2)), maxRows);
+        lock.writeLock().lock();
+        try {
+            columns = restored;
+            resumeToken = snapshot.resumeToken();
+            caughtUp = false;
+            heldDuringCatchUp = new ArrayList<>();
+            updateGauges();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    private void run() {
+        boolean loadNow = !catchUp();
+        while (running) {
+            long waitMs = reloadInterval.toMillis();
+            if (loadNow) {
+                try {
+                    load();
+                } catch (UnsupportedDocumentException | CapacityExceededException e) {
+                    lock.writeLock().lock();
+                    try {
+                        disable(e);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("Could not load file list view, retrying in {} ms: {}", retryDelayMs, e.getMessage());
+                    waitMs = retryDelayMs;
+                }
+            }
+            try {
+                Thread.sleep(waitMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            loadNow = true;
+        }
+    }
+
+    /**
+     * Aplica a la vista restaurada los cambios posteriores a su resume token, y los pasa
+     * también a las estadísticas. Los cambios en vivo que llegan mientras tanto se retienen y
+     * se aplican después, descartando los que la reproducción ya incluyó. Devuelve false si
+     * no hay nada restaurado, el token ya no está en el oplog o la reproducción no termina.
+     */
+    private boolean catchUp() {
+        boolean replayed = false;
+        try {
+            replayed = replayFromSnapshot();
+            return replayed;
+        } finally {
+            if (!replayed) {
+                // La carga completa que sigue recoge los cambios retenidos
+                lock.writeLock().lock();
+                try {
+                    heldDuringCatchUp = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            statistics.finishReplay(replayed);
+        }
+    }
+
+    private boolean replayFromSnapshot() {
+        String token;
+        lock.readLock().lock();
+        try {
+            token = columns != null ? resumeToken : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (token == null) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        int[] applied = {0};
+        while (running) {
+            try {
+                String reached = changeStream.replaySince(token, change -> {
+                    lock.writeLock().lock();
+                    try {
+                        if (columns != null) {
+                            apply(columns, change);
+                            advance(change.getResumeToken());
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    statistics.replay(change);
+                    applied[0]++;
+                });
+                if (reached == null) {
+                    log.warn("Snapshot resume token no longer in the oplog, reloading file list view");
+                    return false;
+                }
+                lock.writeLock().lock();
+                try {
+                    if (columns == null) {
+                        heldDuringCatchUp = null;
+                        return true;
+                    }
+                    advance(reached);
+                    applyHeld(FileStatisticsService.position(reached));
+                    caughtUp = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                log.info("File list view caught up from snapshot: {} changes in {} ms", applied[0],
+                        Duration.ofNanos(System.nanoTime() - start).toMillis());
+                return true;
+            } catch (UnsupportedDocumentException | CapacityExceededException e) {
+                lock.writeLock().lock();
+                try {
+                    disable(e);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                return false;
+            } catch (RuntimeException e) {
+                log.warn("Could not catch up file list view, retrying in {} ms: {}", retryDelayMs, e.getMessage());
+                try {
+                    Thread.sleep(retryDelayMs);
+                } catch (InterruptedException interrupted) {
+                    return false;
+                }
+                // Se reanuda desde el último cambio ya aplicado
+                lock.readLock().lock();
+                try {
+                    token = resumeToken;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        }
+        return false;
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Posición del change stream previa a la lectura: los cambios posteriores llegan como eventos
+        String startToken = changeStream.currentResumeToken();
+        Columns loaded = new Columns(initialCapacity, maxRows);
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "createdAt", "_id"));
+        query.fields().include(FileMetadataMapper.SUMMARY_FIELDS).include("description");
+
+        boolean swapped = false;
+        try (Stream<FileMetadata> documents = mongoTemplate.stream(query, FileMetadata.class)) {
+            // En orden ascendente cada fila se añade al final del índice, sin desplazar nada
+            documents.forEach(loaded::upsert);
+
+            lock.writeLock().lock();
+            try {
+                String token = startToken;
+                for (FileMetadataChange change : pending) {
+                    apply(loaded, change);
+                    if (change.getResumeToken() != null) {
+                        token = change.getResumeToken();
+                    }
+                }
+                columns = loaded;
+                resumeToken = token;
+                caughtUp = true;
+                pending = null;
+                swapped = true;
+                updateGauges();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            if (!swapped) {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        log.info("File list view loaded: {} rows, ~{} MB in {} ms", loaded.liveRows,
+                estimatedBytes / (1024 * 1024), Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    /**
+     * Aplica en orden los cambios en vivo retenidos durante la reproducción, salvo los que
+     * están en o antes de {@code replayedUpTo}: esos ya llegaron por el change stream.
+     */
+    private void applyHeld(String replayedUpTo) {
+        List<FileMetadataChange> held = heldDuringCatchUp;
+        heldDuringCatchUp = null;
+        for (FileMetadataChange change : held) {
+            String position = FileStatisticsService.position(change.getResumeToken());
+            if (position != null && replayedUpTo != null && position.compareTo(replayedUpTo) <= 0) {
+                continue;
+            }
+            apply(columns, change);
+            advance(change.getResumeToken());
+        }
+    }
+
+    private void advance(String token) {
+        if (token != null) {
+            resumeToken = token;
+        }
+    }
+
+    private void apply(Columns target, FileMetadataChange change) {
+        if (change.getDocumentId() == null || !ObjectId.isValid(change.getDocumentId())) {
+            return;
+        }
+        if (change.getType() == FileMetadataChange.Type.DELETE) {
+            target.delete(new ObjectId(change.getDocumentId()));
+        } else if (change.getCurrent() != null) {
+            // Un UPDATE sin documento actual es un borrado posterior; llegará su DELETE
+            target.upsert(change.getCurrent());
+        }
+        if (target == columns) {
+            updateGauges();
+        }
+    }
+
+    private void disable(RuntimeException cause) {
+        running = false;
+        columns = null;
+        pending = null;
+        heldDuringCatchUp = null;
+        updateGauges();
+        log.warn("Disabling in-memory file list view, list queries go to MongoDB: {}", cause.getMessage());
+    }
+
+    private void updateGauges() {
+        rows = columns != null ? columns.liveRows : 0;
+        estimatedBytes = columns != null ? columns.estimatedBytes() : 0;
+        searchTerms = columns != null ? columns.search.termCount() : 0;
+    }
+
+    private static long toMillis(LocalDateTime value) {
+        return value != null ? value.toInstant(ZoneOffset.UTC).toEpochMilli() : Columns.NULL_LONG;
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return millis != Columns.NULL_LONG
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC) : null;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static long[] grow(long[] array, int capacity) {
+        return array == null ? new long[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    /**
+     * Filas vivas ordenadas por (createdAt, _id) con sus columnas compactadas. En
+     * {@code nameLength} -1 es un nombre null; {@code names} concatena los demás en orden,
+     * y lo mismo las descripciones. El índice de búsqueda usa la posición de cada fila.
+     */
+    record Snapshot(String resumeToken, int rows,
+                    int[] idHigh, long[] idLow, long[] fileIdMost, long[] fileIdLeast,
+                    int[] userId, int[] status, int[] contentType,
+                    long[] fileSize, long[] createdAt, int[] nameLength, byte[] names,
+                    int[] descriptionLength, byte[] descriptions, FileSearchIndex.Snapshot search,
+                    List<String> users, List<String> statuses, List<String> contentTypes) {
+    }
+
+    /**
+     * Almacén por columnas; cada fila es un índice común a todos los arrays. Las filas
+     * borradas se reutilizan desde una pila de libres. Visible en el paquete para los tests.
+     */
+    static final class Columns {
+
+        static final long NULL_LONG = Long.MIN_VALUE;
+        static final int NULL_CODE = -1;
+        private static final int NO_MATCH = -2;
+        // Solo se guarda e indexa el principio de las descripciones largas
+        private static final int MAX_DESCRIPTION_LENGTH = 512;
+
+        private final int maxRows;
+
+        // _id (ObjectId: 4 bytes de timestamp + 8 bytes)
+        private int[] idHigh;
+        private long[] idLow;
+        // fileId (UUID; 0/0 representa null)
+        private long[] fileIdMost;
+        private long[] fileIdLeast;
+        private int[] userId;
+        private int[] status;
+        private int[] contentType;
+        private long[] fileSize;
+        private long[] createdAt;
+        private final Texts names = new Texts();
+        private final Texts descriptions = new Texts();
+
+        private final Dictionary users = new Dictionary();
+        private final Dictionary statuses = new Dictionary();
+        private final Dictionary contentTypes = new Dictionary();
+        private FileSearchIndex search = new FileSearchIndex();
+
+        // Filas vivas ordenadas por (createdAt, _id) ascendente; la lista se recorre al revés
+        private int[] order;
+        private int liveRows;
+        private int usedRows;
+        private int[] freeRows = new int[16];
+        private int freeCount;
+
+        // Índice _id -> fila + 1 con direccionamiento abierto (0 = hueco)
+        private int[] slots;
+
+        Columns(int capacity, int maxRows) {
+            this.maxRows = maxRows;
+            allocate(Math.max(16, capacity));
+            slots = new int[Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) << 1];
+        }
+
+        Snapshot snapshot(String token) {
+            int rows = liveRows;
+            int[] snapshotIdHigh = new int[rows];
+            long[] snapshotIdLow = new long[rows];
+            long[] snapshotFileIdMost = new long[rows];
+            long[] snapshotFileIdLeast = new long[rows];
+            int[] snapshotUserId = new int[rows];
+            int[] snapshotStatus = new int[rows];
+            int[] snapshotContentType = new int[rows];
+            long[] snapshotFileSize = new long[rows];
+            long[] snapshotCreatedAt = new long[rows];
+            int[] snapshotNameLength = new int[rows];
+            int[] snapshotDescriptionLength = new int[rows];
+            int[] positions = new int[usedRows];
+
+            for (int position = 0; position < rows; position++) {
+                int row = order[position];
+                positions[row] = position;
+                snapshotIdHigh[position] = idHigh[row];
+                snapshotIdLow[position] = idLow[row];
+                snapshotFileIdMost[position] = fileIdMost[row];
+                snapshotFileIdLeast[position] = fileIdLeast[row];
+                snapshotUserId[position] = userId[row];
+                snapshotStatus[position] = status[row];
+                snapshotContentType[position] = contentType[row];
+                snapshotFileSize[position] = fileSize[row];
+                snapshotCreatedAt[position] = createdAt[row];
+            }
+
+            return new Snapshot(token, rows, snapshotIdHigh, snapshotIdLow, snapshotFileIdMost,
+                    snapshotFileIdLeast, snapshotUserId, snapshotStatus, snapshotContentType,
+                    snapshotFileSize, snapshotCreatedAt,
+                    snapshotNameLength, names.copyTo(order, rows, snapshotNameLength),
+                    snapshotDescriptionLength, descriptions.copyTo(order, rows, snapshotDescriptionLength),
+                    search.snapshot(positions),
+                    users.values(), statuses.values(), contentTypes.values());
+        }
+
+        static Columns restore(Snapshot snapshot, int capacity, int maxRows) {
+            if (snapshot.rows() > maxRows) {
+                throw new CapacityExceededException("Snapshot has more than " + maxRows + " files");
+            }
+            Columns restored = new Columns(Math.min(capacity, maxRows), maxRows);
+            int rows = snapshot.rows();
+            System.arraycopy(snapshot.idHigh(), 0, restored.idHigh, 0, rows);
+            System.arraycopy(snapshot.idLow(), 0, restored.idLow, 0, rows);
+            System.arraycopy(snapshot.fileIdMost(), 0, restored.fileIdMost, 0, rows);
+            System.arraycopy(snapshot.fileIdLeast(), 0, restored.fileIdLeast, 0, rows);
+            System.arraycopy(snapshot.userId(), 0, restored.userId, 0, rows);
+            System.arraycopy(snapshot.status(), 0, restored.status, 0, rows);
+            System.arraycopy(snapshot.contentType(), 0, restored.contentType, 0, rows);
+            System.arraycopy(snapshot.fileSize(), 0, restored.fileSize, 0, rows);
+            System.arraycopy(snapshot.createdAt(), 0, restored.createdAt, 0, rows);
+            restored.names.restore(snapshot.nameLength(), snapshot.names(), rows);
+            restored.descriptions.restore(snapshot.descriptionLength(), snapshot.descriptions(), rows);
+
+            snapshot.users().forEach(restored.users::encode);
+            snapshot.statuses().forEach(restored.statuses::encode);
+            snapshot.contentTypes().forEach(restored.contentTypes::encode);
+
+            // Las filas ya vienen ordenadas: el índice de orden es la identidad
+            for (int row = 0; row < rows; row++) {
+                restored.order[row] = row;
+                restored.insertIntoSlots(row);
+                restored.liveRows++;
+            }
+            restored.usedRows = rows;
+            restored.search = FileSearchIndex.restore(snapshot.search());
+            return restored;
+        }
+
+        CursorPage<FileSummaryDto> page(PageCursor after, int limit, FileListFilter filter) {
+            int statusCode = filterCode(statuses, filter.getStatus());
+            int contentTypeCode = filterCode(contentTypes, filter.getContentType());
+            int userCode = filterCode(users, filter.getUserId());
+
+            List<FileSummaryDto> items = new ArrayList<>(Math.min(limit, liveRows));
+            String nextCursor = null;
+            if (statusCode != NO_MATCH && contentTypeCode != NO_MATCH && userCode != NO_MATCH) {
+                int position = liveRows - 1;
+                if (after != null) {
+                    ObjectId id = new ObjectId(after.id());
+                    position = lowerBound(toMillis(after.createdAt()), high(id), low(id)) - 1;
+                }
+                int last = -1;
+                for (; position >= 0; position--) {
+                    int row = order[position];
+                    if (matches(row, statusCode, contentTypeCode, userCode)) {
+                        if (items.size() == limit) {
+                            nextCursor = PageCursor.encode(toDateTime(createdAt[last]), objectId(last).toHexString());
+                            break;
+                        }
+                        items.add(summary(row));
+                        last = row;
+                    }
+                }
+            }
+
+            return CursorPage.<FileSummaryDto>builder()
+                    .items(items)
+                    .nextCursor(nextCursor)
+                    .size(limit)
+                    .build();
+        }
+
+        /** Las {@code limit} filas más recientes que encajan con todas las palabras y el filtro. */
+        List<FileSummaryDto> search(List<String> words, int limit, FileListFilter filter) {
+            int statusCode = filterCode(statuses, filter.getStatus());
+            int contentTypeCode = filterCode(contentTypes, filter.getContentType());
+            int userCode = filterCode(users, filter.getUserId());
+            if (statusCode == NO_MATCH || contentTypeCode == NO_MATCH || userCode == NO_MATCH) {
+                return List.of();
+            }
+            BitSet candidates = search.matches(words);
+            if (candidates == null) {
+                return List.of();
+            }
+
+            // Con muchos candidatos se recorre la lista desde la fila más reciente hasta
+            // completar el límite; con pocos, se eligen los más recientes entre ellos. Un
+            // usuario tiene una fracción pequeña de las filas: con su filtro no compensa recorrer
+            int candidateCount = candidates.cardinality();
+            if (userCode == NULL_CODE && (long) limit * liveRows < (long) candidateCount * candidateCount) {
+                List<FileSummaryDto> items = new ArrayList<>(limit);
+                for (int position = liveRows - 1; position >= 0 && items.size() < limit; position--) {
+                    int row = order[position];
+                    if (candidates.get(row) && matches(row, statusCode, contentTypeCode, userCode)) {
+                        items.add(summary(row));
+                    }
+                }
+                return items;
+            }
+
+            // Montículo con la fila más antigua en la cima
+            PriorityQueue<Integer> newest = new PriorityQueue<>(limit + 1, this::compareRows);
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                if (!matches(row, statusCode, contentTypeCode, userCode)) {
+                    continue;
+                }
+                if (newest.size() < limit) {
+                    newest.add(row);
+                } else if (compareRows(row, newest.peek()) > 0) {
+                    newest.poll();
+                    newest.add(row);
+                }
+            }
+
+            FileSummaryDto[] items = new FileSummaryDto[newest.size()];
+            for (int i = items.length - 1; i >= 0; i--) {
+                items[i] = summary(newest.poll());
+            }
+            return Arrays.asList(items);
+        }
+
+        void upsert(FileMetadata metadata) {
+            if (metadata.getId() == null || !ObjectId.isValid(metadata.getId())) {
+                throw new UnsupportedDocumentException("Document _id is not an ObjectId: " + metadata.getId());
+            }
+            ObjectId id = new ObjectId(metadata.getId());
+            int row = find(high(id), low(id));
+            long created = toMillis(metadata.getCreatedAt());
+            String name = metadata.getOriginalFileName();
+            String description = truncate(metadata.getDescription());
+
+            if (row >= 0) {
+                if (createdAt[row] != created) {
+                    // Cambia la clave de orden: se saca y se vuelve a insertar
+                    removeFromOrder(row);
+                    createdAt[row] = created;
+                    insertIntoOrder(row);
+                }
+                String previousName = names.get(row);
+                String previousDescription = descriptions.get(row);
+                if (!Objects.equals(previousName, name) || !Objects.equals(previousDescription, description)) {
+                    search.update(row, previousName, previousDescription, name, description);
+                    names.set(row, name, order, liveRows);
+                    descriptions.set(row, description, order, liveRows);
+                }
+            } else {
+                row = newRow();
+                idHigh[row] = high(id);
+                idLow[row] = low(id);
+                createdAt[row] = created;
+                insertIntoSlots(row);
+                insertIntoOrder(row);
+                search.add(row, name, description);
+                names.set(row, name, order, liveRows);
+                descriptions.set(row, description, order, liveRows);
+            }
+
+            UUID fileId = metadata.getFileId();
+            fileIdMost[row] = fileId != null ? fileId.getMostSignificantBits() : 0;
+            fileIdLeast[row] = fileId != null ? fileId.getLeastSignificantBits() : 0;
+            userId[row] = users.encode(metadata.getUserId() != null ? metadata.getUserId().toString() : null);
+            status[row] = statuses.encode(metadata.getStatus());
+            contentType[row] = contentTypes.encode(metadata.getContentType());
+            fileSize[row] = metadata.getFileSize() != null ? metadata.getFileSize() : NULL_LONG;
+        }
+
+        void delete(ObjectId id) {
+            int row = find(high(id), low(id));
+            if (row < 0) {
+                return;
+            }
+            search.remove(row, names.get(row), descriptions.get(row));
+            removeFromOrder(row);
+            removeFromSlots(row);
+            names.clear(row);
+            descriptions.clear(row);
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            }
+            freeRows[freeCount++] = row;
+        }
+
+        long estimatedBytes() {
+            long perRow = 5L * Long.BYTES + 4L * Integer.BYTES;
+            return perRow * order.length + (long) slots.length * Integer.BYTES
+                    + names.estimatedBytes() + descriptions.estimatedBytes()
+                    + (long) freeRows.length * Integer.BYTES + search.estimatedBytes();
+        }
+
+        private FileSummaryDto summary(int row) {
+            return FileSummaryDto.builder()
+                    .fileId(fileIdMost[row] == 0 && fileIdLeast[row] == 0
+                            ? null : new UUID(fileIdMost[row], fileIdLeast[row]).toString())
+                    .userId(users.decode(userId[row]))
+                    .fileName(names.get(row))
+                    .contentType(contentTypes.decode(contentType[row]))
+                    .fileSize(fileSize[row] != NULL_LONG ? fileSize[row] : null)
+                    .status(statuses.decode(status[row]))
+                    .createdAt(toDateTime(createdAt[row]))
+                    .build();
+        }
+
+        private boolean matches(int row, int statusCode, int contentTypeCode, int userCode) {
+            return (statusCode == NULL_CODE || status[row] == statusCode)
+                    && (contentTypeCode == NULL_CODE || contentType[row] == contentTypeCode)
+                    && (userCode == NULL_CODE || userId[row] == userCode);
+        }
+
+        /** NULL_CODE si no se filtra por ese campo, NO_MATCH si ninguna fila tiene ese valor. */
+        private static int filterCode(Dictionary dictionary, String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            int code = dictionary.codeOf(value);
+            return code >= 0 ? code : NO_MATCH;
+        }
+
+        private static String truncate(String description) {
+            return description != null && description.length() > MAX_DESCRIPTION_LENGTH
+                    ? description.substring(0, MAX_DESCRIPTION_LENGTH) : description;
+        }
+
+        private int newRow() {
+            if (freeCount > 0) {
+                return freeRows[--freeCount];
+            }
+            if (usedRows == order.length) {
+                if (usedRows >= maxRows) {
+                    throw new CapacityExceededException("More than " + maxRows + " files in file_metadata");
+                }
+                allocate((int) Math.min(maxRows, usedRows + (usedRows >> 1)));
+            }
+            return usedRows++;
+        }
+
+        private void allocate(int capacity) {
+            idHigh = grow(idHigh, capacity);
+            idLow = grow(idLow, capacity);
+            fileIdMost = grow(fileIdMost, capacity);
+            fileIdLeast = grow(fileIdLeast, capacity);
+            userId = grow(userId, capacity);
+            status = grow(status, capacity);
+            contentType = grow(contentType, capacity);
+            fileSize = grow(fileSize, capacity);
+            createdAt = grow(createdAt, capacity);
+            names.allocate(capacity);
+            descriptions.allocate(capacity);
+            order = grow(order, capacity);
+        }
+
+        // --- Orden por (createdAt, _id) ---
+
+        private void insertIntoOrder(int row) {
+            int position = lowerBound(createdAt[row], idHigh[row], idLow[row]);
+            System.arraycopy(order, position, order, position + 1, liveRows - position);
+            order[position] = row;
+            liveRows++;
+        }
+
+        private void removeFromOrder(int row) {
+            int position = lowerBound(createdAt[row], idHigh[row], idLow[row]);
+            System.arraycopy(order, position + 1, order, position, liveRows - position - 1);
+            liveRows--;
+        }
+
+        /** Primera posición cuya clave es mayor o igual que la indicada. */
+        private int lowerBound(long created, int high, long low) {
+            int from = 0;
+            int to = liveRows;
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (compare(order[middle], created, high, low) < 0) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+
+        /** Orden de la lista entre dos filas: positivo si {@code row} es más reciente. */
+        private int compareRows(int row, int other) {
+            return compare(row, createdAt[other], idHigh[other], idLow[other]);
+        }
+
+        private int compare(int row, long created, int high, long low) {
+            int result = Long.compare(createdAt[row], created);
+            if (result == 0) {
+                result = Integer.compareUnsigned(idHigh[row], high);
+            }
+            if (result == 0) {
+                result = Long.compareUnsigned(idLow[row], low);
+            }
+            return result;
+        }
+
+        // --- Índice hash de _id ---
+
+        private int find(int high, long low) {
+            int mask = slots.length - 1;
+            for (int slot = hash(high, low) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int row = slots[slot] - 1;
+                if (idHigh[row] == high && idLow[row] == low) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+
+        private void insertIntoSlots(int row) {
+            if ((liveRows + 1) * 2 > slots.length) {
+                rehash(slots.length * 2);
+            }
+            int mask = slots.length - 1;
+            int slot = hash(idHigh[row], idLow[row]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = row + 1;
+        }
+
+        /** Borrado con desplazamiento hacia atrás para no dejar marcas de borrado. */
+        private void removeFromSlots(int row) {
+            int mask = slots.length - 1;
+            int hole = hash(idHigh[row], idLow[row]) & mask;
+            while (slots[hole] != row + 1) {
+                hole = (hole + 1) & mask;
+            }
+            slots[hole] = 0;
+            for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int moved = slots[slot] - 1;
+                int home = hash(idHigh[moved], idLow[moved]) & mask;
+                // Se mueve si su posición ideal no está en el tramo (hole, slot]
+                boolean between = hole <= slot ? home > hole && home <= slot : home > hole || home <= slot;
+                if (!between) {
+                    slots[hole] = slots[slot];
+                    slots[slot] = 0;
+                    hole = slot;
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            int[] previous = slots;
+            slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int value : previous) {
+                if (value != 0) {
+                    int row = value - 1;
+                    int slot = hash(idHigh[row], idLow[row]) & mask;
+                    while (slots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[slot] = value;
+                }
+            }
+        }
+
+        private static int hash(int high, long low) {
+            long h = low * 0x9E3779B97F4A7C15L + high;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private ObjectId objectId(int row) {
+            return new ObjectId(ByteBuffer.allocate(12).putInt(idHigh[row]).putLong(idLow[row]).array());
+        }
+
+        private static int high(ObjectId id) {
+            return ByteBuffer.wrap(id.toByteArray()).getInt(0);
+        }
+
+        private static long low(ObjectId id) {
+            return ByteBuffer.wrap(id.toByteArray()).getLong(4);
+        }
+    }
+
+    /**
+     * Columna de textos en UTF-8 dentro de un único byte[]; cada fila guarda su offset y
+     * longitud, con -1 para null. Un texto reemplazado deja hueco hasta que se compacta.
+     */
+    private static final class Texts {
+
+        private int[] offset;
+        private int[] length;
+        private byte[] bytes = new byte[1024];
+        private int used;
+        private int garbage;
+
+        void allocate(int capacity) {
+            offset = grow(offset, capacity);
+            length = grow(length, capacity);
+        }
+
+        String get(int row) {
+            return length[row] < 0 ? null : new String(bytes, offset[row], length[row], StandardCharsets.UTF_8);
+        }
+
+        /** {@code order} y {@code liveRows} son las filas vivas, por si hay que compactar. */
+        void set(int row, String value, int[] order, int liveRows) {
+            clear(row);
+            if (value == null) {
+                return;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (garbage > used / 2 && garbage > 1 << 20) {
+                compact(order, liveRows);
+            }
+            if (used + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(used + encoded.length, bytes.length + (bytes.length >> 1)));
+            }
+            System.arraycopy(encoded, 0, bytes, used, encoded.length);
+            offset[row] = used;
+            length[row] = encoded.length;
+            used += encoded.length;
+        }
+
+        void clear(int row) {
+            if (length[row] > 0) {
+                garbage += length[row];
+            }
+            length[row] = -1;
+        }
+
+        /** Rellena {@code lengths} en el orden indicado y devuelve los textos concatenados. */
+        byte[] copyTo(int[] order, int rows, int[] lengths) {
+            byte[] copy = new byte[used - garbage];
+            int copied = 0;
+            for (int position = 0; position < rows; position++) {
+                int row = order[position];
+                lengths[position] = length[row];
+                if (length[row] > 0) {
+                    System.arraycopy(bytes, offset[row], copy, copied, length[row]);
+                    copied += length[row];
+                }
+            }
+            return Arrays.copyOf(copy, copied);
+        }
+
+        void restore(int[] lengths, byte[] concatenated, int rows) {
+            System.arraycopy(lengths, 0, length, 0, rows);
+            bytes = Arrays.copyOf(concatenated, Math.max(1024, concatenated.length));
+            used = concatenated.length;
+            int position = 0;
+            for (int row = 0; row < rows; row++) {
+                offset[row] = position;
+                position += Math.max(0, length[row]);
+            }
+        }
+
+        long estimatedBytes() {
+            return 2L * Integer.BYTES * offset.length + bytes.length;
+        }
+
+        /** Copia los textos vivos a un array nuevo para recuperar los de filas borradas o reemplazadas. */
+        private void compact(int[] order, int liveRows) {
+            byte[] compacted = new byte[Math.max(1024, used - garbage + (used >> 2))];
+            int copied = 0;
+            for (int position = 0; position < liveRows; position++) {
+                int row = order[position];
+                if (length[row] > 0) {
+                    System.arraycopy(bytes, offset[row], compacted, copied, length[row]);
+                    offset[row] = copied;
+                    copied += length[row];
+                }
+            }
+            bytes = compacted;
+            used = copied;
+            garbage = 0;
+        }
+    }
+
+    /** Diccionario de cadenas a códigos densos; null es {@link Columns#NULL_CODE}. */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return Columns.NULL_CODE;
+            }
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        int codeOf(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : -1;
+        }
+
+        String decode(int code) {
+            return code != Columns.NULL_CODE ? values.get(code) : null;
+        }
+
+        List<String> values() {
+            return List.copyOf(values);
+        }
+    }
+
+    private static final class CapacityExceededException extends IllegalStateException {
+        CapacityExceededException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class UnsupportedDocumentException extends IllegalStateException {
+        UnsupportedDocumentException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.dto.FileInfoDto;
+import com.fileshare.visualizer.dto.FileSummaryDto;
+import com.fileshare.visualizer.model.FileMetadata;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Conversión de documentos de file_metadata a los DTOs de la API.
+ */
+@Component
+public class FileMetadataMapper {
+
+    /** Campos de file_metadata que necesita {@link #toSummary}; el resto no se lee de MongoDB. */
+    public static final String[] SUMMARY_FIELDS = {
+            "fileId", "userId", "originalFileName", "contentType", "fileSize", "status", "createdAt"
+    };
+
+    public FileInfoDto toDto(FileMetadata metadata) {
+        return FileInfoDto.builder()
+                .fileId(text(metadata.getFileId()))
+                .userId(text(metadata.getUserId()))
+                .fileName(metadata.getOriginalFileName())
+                .contentType(metadata.getContentType())
+                .fileSize(metadata.getFileSize())
+                .hash(metadata.getHash())
+                .isEncrypted(metadata.getIsEncrypted())
+                .description(metadata.getDescription())
+                .status(metadata.getStatus())
+                .createdAt(metadata.getCreatedAt())
+                .processedAt(metadata.getProcessedAt())
+                .build();
+    }
+
+    public FileSummaryDto toSummary(FileMetadata metadata) {
+        return FileSummaryDto.builder()
+                .fileId(text(metadata.getFileId()))
+                .userId(text(metadata.getUserId()))
+                .fileName(metadata.getOriginalFileName())
+                .contentType(metadata.getContentType())
+                .fileSize(metadata.getFileSize())
+                .status(metadata.getStatus())
+                .createdAt(metadata.getCreatedAt())
+                .build();
+    }
+
+    private String text(UUID id) {
+        return id != null ? id.toString() : null;
+    }
+}
@@ -1,13 +1,19 @@
 package com.fileshare.visualizer.service;
 
+import com.fileshare.visualizer.dto.CursorPage;
 import com.fileshare.visualizer.dto.FileInfoDto;
+import com.fileshare.visualizer.dto.FileListFilter;
+import com.fileshare.visualizer.dto.FileSummaryDto;
 import com.fileshare.visualizer.model.FileMetadata;
 import com.fileshare.visualizer.repository.FileMetadataRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -16,29 +22,129 @@ import java.util.stream.Collectors;
 public class FileMetadataService {
 
     private final FileMetadataRepository repository;
+    private final FileMetadataMapper mapper;
+    private final FileListView fileListView;
 
-    public List<FileInfoDto> getAllFiles() {
-        log.info("Fetching all files from MongoDB");
-        List<FileMetadata> files = repository.findAllByOrderByCreatedAtDesc();
-        log.info("Found {} files in database", files.size());
-        return files.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+    @Value("${visualizer.pagination.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${visualizer.pagination.max-page-size:200}")
+    private int maxPageSize;
+
+    @Value("${visualizer.search.default-limit:10}")
+    private int defaultSearchLimit;
+
+    @Value("${visualizer.search.max-limit:50}")
+    private int maxSearchLimit;
+
+    public CursorPage<FileSummaryDto> getFilesPage(String cursor, Integer size) {
+        return getFilesPage(cursor, size, FileListFilter.NONE);
     }
 
-    private FileInfoDto toDto(FileMetadata metadata) {
-        return FileInfoDto.builder()
-                .fileId(metadata.getFileId() != null ? metadata.getFileId().toString() : null)
-                .userId(metadata.getUserId() != null ? metadata.getUserId().toString() : null)
-                .fileName(metadata.getOriginalFileName())
-                .contentType(metadata.getContentType())
-                .fileSize(metadata.getFileSize())
-                .hash(metadata.getHash())
-                .isEncrypted(metadata.getIsEncrypted())
-                .description(metadata.getDescription())
-                .status(metadata.getStatus())
-                .createdAt(metadata.getCreatedAt())
-                .processedAt(metadata.getProcessedAt())
+    /**
+     * Página de archivos más recientes primero, paginada por (createdAt, _id).
+     * El cursor es opaco para el cliente; null o vacío devuelve la primera página.
+     * Se sirve desde {@link FileListView} si está cargada; si no, de MongoDB proyectando
+     * solo los campos del resumen.
+     *
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public CursorPage<FileSummaryDto> getFilesPage(String cursor, Integer size, FileListFilter filter) {
+        int pageSize = resolvePageSize(size);
+        PageCursor after = cursor != null && !cursor.isBlank() ? PageCursor.decode(cursor) : null;
+
+        if (filter.getUserId() != null) {
+            Optional<String> userId = normalizeUuid(filter.getUserId());
+            if (userId.isEmpty()) {
+                return CursorPage.<FileSummaryDto>builder().items(List.of()).size(pageSize).build();
+            }
+            filter = filter.toBuilder().userId(userId.get()).build();
+        }
+
+        Optional<CursorPage<FileSummaryDto>> fromView = fileListView.page(after, pageSize, filter);
+        if (fromView.isPresent()) {
+            return fromView.get();
+        }
+
+        log.debug("Fetching files page from MongoDB (size: {}, after: {})",
+                pageSize, after != null ? after.id() : null);
+        // Se pide un elemento extra para saber si hay página siguiente
+        List<FileMetadata> files = repository.findPageAfter(
+                after != null ? after.createdAt() : null, after != null ? after.id() : null,
+                filter, pageSize + 1, FileMetadataMapper.SUMMARY_FIELDS);
+
+        String nextCursor = null;
+        if (files.size() > pageSize) {
+            files = files.subList(0, pageSize);
+            FileMetadata last = files.get(pageSize - 1);
+            nextCursor = PageCursor.encode(last.getCreatedAt(), last.getId());
+        }
+
+        return CursorPage.<FileSummaryDto>builder()
+                .items(files.stream().map(mapper::toSummary).collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .size(pageSize)
                 .build();
     }
+
+    /**
+     * Búsqueda incremental por nombre y descripción: los archivos más recientes que
+     * contienen, para cada palabra de la consulta, un término que empieza por ella.
+     * Solo se sirve desde {@link FileListView}; vacío si la vista no está cargada.
+     */
+    public Optional<List<FileSummaryDto>> searchFiles(String query, Integer limit, FileListFilter filter) {
+        int resultLimit = limit == null || limit <= 0 ? defaultSearchLimit : Math.min(limit, maxSearchLimit);
+
+        if (filter.getUserId() != null) {
+            Optional<String> userId = normalizeUuid(filter.getUserId());
+            if (userId.isEmpty()) {
+                return Optional.of(List.of());
+            }
+            filter = filter.toBuilder().userId(userId.get()).build();
+        }
+        return fileListView.search(query, resultLimit, filter);
+    }
+
+    /**
+     * Archivo por fileId leído de un secundario si hay alguno disponible.
+     * Un fileId que no es un UUID se trata como no encontrado, igual que soap-service.
+     */
+    public Optional<FileInfoDto> findFile(String fileId) {
+        return normalizeUuid(fileId)
+                .flatMap(repository::findByFileIdText)
+                .map(mapper::toDto);
+    }
+
+    /** Archivos del usuario, más recientes primero, leídos de un secundario si es posible. */
+    public List<FileInfoDto> findUserFiles(String userId) {
+        return normalizeUuid(userId)
+                .map(repository::findByUserIdTextNewestFirst)
+                .orElse(List.of())
+                .stream()
+                .map(mapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    public long countFiles() {
+        return repository.estimatedCount();
+    }
+
+    public int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    /** Los ids se guardan con el formato de Guid.ToString() de .NET: minúsculas con guiones. */
+    private Optional<String> normalizeUuid(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(UUID.fromString(value).toString());
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
 }
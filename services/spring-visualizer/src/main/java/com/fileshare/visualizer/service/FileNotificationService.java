@@ -1,105 +1,162 @@
 package com.fileshare.visualizer.service;
 
-import com.fileshare.visualizer.dto.FileInfoDto;
+import com.fileshare.visualizer.config.StompSubscriptions;
+import com.fileshare.visualizer.dto.FileListDelta;
+import com.fileshare.visualizer.dto.FileListSnapshot;
+import com.fileshare.visualizer.dto.FileSummaryDto;
 import com.fileshare.visualizer.dto.FileUpdateEvent;
 import com.fileshare.visualizer.model.FileMetadata;
-import com.fileshare.visualizer.repository.FileMetadataRepository;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
+import com.fileshare.visualizer.model.FileMetadataChange;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Servicio que detecta cambios en archivos y envía notificaciones WebSocket.
- * Usa polling periódico para detectar cambios en MongoDB.
+ * Servicio que envía notificaciones WebSocket cuando cambian los archivos.
+ * Los cambios llegan desde el change stream de MongoDB ({@link FileChangeStreamListener}).
+ * <p>
+ * En lugar de reenviar la lista completa en cada cambio se publica un {@link FileListDelta}
+ * numerado en /topic/files-delta; los clientes piden {@link #getSnapshot()} al conectar
+ * o cuando detectan un hueco en la secuencia. Los deltas recientes quedan en
+ * {@link DeltaReplayBuffer} para que una reconexión recupere solo lo que perdió. Snapshots
+ * y deltas llevan el epoch del buffer: un sequence solo tiene sentido dentro de su epoch.
+ * Con varias réplicas, el snapshot y los deltas de un cliente deben venir de la misma
+ * instancia que su sesión WebSocket (sesiones sticky, como ya exige SockJS).
+ * <p>
+ * El {@link FileUpdateEvent} completo solo se envía a /topic/users/{userId}/files, para que
+ * una página de un usuario reciba solo sus archivos; las páginas globales usan el delta, que
+ * lleva el tipo de cambio para sus avisos. Solo se publica en los topics con alguna
+ * suscripción ({@link StompSubscriptions}); los deltas se numeran y guardan igualmente.
  */
 @Slf4j
 @Service
-@EnableScheduling
 @RequiredArgsConstructor
 public class FileNotificationService {
 
+    private static final String FILES_DELTA_TOPIC = "/topic/files-delta";
+
     private final SimpMessagingTemplate messagingTemplate;
-    private final FileMetadataRepository repository;
+    private final FileMetadataService fileMetadataService;
+    private final DeltaReplayBuffer replayBuffer;
+    private final FileMetadataMapper mapper;
+    private final FileStatisticsService fileStatisticsService;
+    private final StompSubscriptions subscriptions;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock deltaLock = new ReentrantLock();
+
+    /**
+     * Convertir cada cambio de documento en un FileUpdateEvent por usuario y en un delta de la lista
+     */
+    @EventListener
+    public void onFileChange(FileMetadataChange change) {
+        FileUpdateEvent event = toEvent(change);
+        log.info("File {} {} (status: {})", event.getFileId(), change.getType(), event.getStatus());
+
+        for (String userId : userIds(change)) {
+            send(userFilesTopic(userId), event);
+        }
 
-    private int lastKnownCount = 0;
-    private LocalDateTime lastCheck = LocalDateTime.now();
+        sendDelta(change);
+    }
 
-    @PostConstruct
-    public void init() {
-        lastKnownCount = (int) repository.count();
-        log.info("FileNotificationService initialized. Current file count: {}", lastKnownCount);
+    private static String userFilesTopic(String userId) {
+        return "/topic/users/" + userId + "/files";
     }
 
     /**
-     * Verificar cambios cada 2 segundos y enviar actualizaciones si hay cambios
+     * Primera página de la lista con el sequence vigente. El sequence se lee antes de
+     * consultar MongoDB: los deltas posteriores que el cliente reciba son idempotentes sobre ella.
      */
-    @Scheduled(fixedRate = 2000)
-    public void checkForChanges() {
+    public FileListSnapshot getSnapshot(Integer limit) {
+        long current = sequence.get();
+        List<FileSummaryDto> files = fileMetadataService.getFilesPage(null, limit).getItems();
+
+        return FileListSnapshot.builder()
+                .epoch(replayBuffer.getEpoch())
+                .sequence(current)
+                .files(files)
+                .totalFiles(fileStatisticsService.getTotalFiles().orElseGet(fileMetadataService::countFiles))
+                .build();
+    }
+
+    private void sendDelta(FileMetadataChange change) {
+        FileListDelta.FileListDeltaBuilder delta = FileListDelta.builder()
+                .epoch(replayBuffer.getEpoch())
+                .eventType(change.getType().name())
+                .upserted(List.of())
+                .removed(List.of())
+                .timestamp(change.getTimestamp());
+
+        if (change.getType() != FileMetadataChange.Type.DELETE && change.getCurrent() != null) {
+            delta.upserted(List.of(mapper.toSummary(change.getCurrent())));
+        } else if (change.getPrevious() != null && change.getPrevious().getFileId() != null) {
+            delta.removed(List.of(change.getPrevious().getFileId().toString()));
+        } else {
+            // DELETE sin pre-image: no sabemos qué fileId quitar
+            delta.resyncRequired(true);
+        }
+
+        // El sequence se asigna y envía bajo el mismo lock para que los deltas salgan en orden
+        deltaLock.lock();
         try {
-            int currentCount = (int) repository.count();
-            
-            if (currentCount != lastKnownCount) {
-                log.info("File count changed from {} to {}", lastKnownCount, currentCount);
-                
-                String eventType = currentCount > lastKnownCount ? "INSERT" : "DELETE";
-                
-                // Enviar evento de cambio
-                FileUpdateEvent event = FileUpdateEvent.builder()
-                        .eventType(eventType)
-                        .timestamp(LocalDateTime.now())
-                        .build();
-                
-                messagingTemplate.convertAndSend("/topic/files", event);
-                
-                // Enviar lista actualizada
-                sendFilesList();
-                
-                lastKnownCount = currentCount;
+            FileListDelta message = delta.sequence(sequence.incrementAndGet()).build();
+            replayBuffer.append(message);
+            if (send(FILES_DELTA_TOPIC, message)) {
+                log.debug("Sent files delta #{} via WebSocket", message.getSequence());
             }
         } catch (Exception e) {
-            log.debug("Error checking for file changes: {}", e.getMessage());
+            log.error("Error sending files delta: {}", e.getMessage());
+        } finally {
+            deltaLock.unlock();
+        }
+    }
+
+    private boolean send(String destination, Object payload) {
+        if (!subscriptions.hasSubscribers(destination)) {
+            return false;
         }
+        messagingTemplate.convertAndSend(destination, payload);
+        return true;
     }
 
     /**
-     * Enviar la lista completa de archivos a todos los clientes conectados
+     * Usuarios afectados: el dueño actual y, si el cambio lo reasigna, el anterior. Un
+     * DELETE sin pre-image no tiene usuario y solo llega como delta.
      */
-    public void sendFilesList() {
-        try {
-            List<FileInfoDto> files = repository.findAllByOrderByCreatedAtDesc()
-                    .stream()
-                    .map(this::toDto)
-                    .collect(Collectors.toList());
-            
-            messagingTemplate.convertAndSend("/topic/files-list", files);
-            log.debug("Sent files list via WebSocket ({} files)", files.size());
-        } catch (Exception e) {
-            log.error("Error sending files list: {}", e.getMessage());
+    private Set<String> userIds(FileMetadataChange change) {
+        Set<String> userIds = new HashSet<>(2);
+        for (FileMetadata metadata : new FileMetadata[]{change.getCurrent(), change.getPrevious()}) {
+            if (metadata != null && metadata.getUserId() != null) {
+                userIds.add(metadata.getUserId().toString());
+            }
         }
+        return userIds;
     }
 
-    private FileInfoDto toDto(FileMetadata metadata) {
-        return FileInfoDto.builder()
-                .fileId(metadata.getFileId() != null ? metadata.getFileId().toString() : null)
-                .userId(metadata.getUserId() != null ? metadata.getUserId().toString() : null)
-                .fileName(metadata.getOriginalFileName())
-                .contentType(metadata.getContentType())
-                .fileSize(metadata.getFileSize())
-                .hash(metadata.getHash())
-                .isEncrypted(metadata.getIsEncrypted())
-                .description(metadata.getDescription())
-                .status(metadata.getStatus())
-                .createdAt(metadata.getCreatedAt())
-                .processedAt(metadata.getProcessedAt())
-                .build();
+    private FileUpdateEvent toEvent(FileMetadataChange change) {
+        FileUpdateEvent.FileUpdateEventBuilder builder = FileUpdateEvent.builder()
+                .eventType(change.getType().name())
+                .timestamp(change.getTimestamp());
+
+        FileMetadata metadata = change.latest();
+        if (metadata != null) {
+            builder.fileId(metadata.getFileId() != null ? metadata.getFileId().toString() : null)
+                    .userId(metadata.getUserId() != null ? metadata.getUserId().toString() : null)
+                    .fileName(metadata.getOriginalFileName())
+                    .contentType(metadata.getContentType())
+                    .fileSize(metadata.getFileSize())
+                    .status(metadata.getStatus())
+                    .createdAt(metadata.getCreatedAt());
+        }
+        return builder.build();
     }
 }
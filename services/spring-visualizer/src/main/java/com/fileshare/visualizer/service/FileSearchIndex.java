@@ -0,0 +1,395 @@
+package com.fileshare.visualizer.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Índice invertido de términos sobre el nombre y la descripción de las filas de
+ * {@link FileListView}, para la búsqueda incremental del dashboard.
+ * <p>
+ * Los textos se normalizan (minúsculas, sin tildes) y se parten en términos por los
+ * caracteres que no son letra ni dígito. Cada tramo se indexa entero y, además, partido
+ * en segmentos antes de cada mayúscula que sigue a una minúscula o un dígito
+ * ("informeQ3" da informeq3, informe y q3), y cada segmento entre letras y dígitos
+ * ("informe2024" da informe2024, informe y 2024); de estas partes solo se indexan las
+ * de dos o más caracteres.
+ * <p>
+ * Cada término guarda las filas que lo contienen, como array ordenado o, si está en
+ * muchas filas, como bitmap; se localiza por hash al indexar, y un mapa ordenado con
+ * los mismos términos resuelve una palabra de la consulta como el rango de términos que
+ * empiezan por ella.
+ * <p>
+ * No es thread-safe: lo protege el lock de {@link FileListView}.
+ */
+final class FileSearchIndex {
+
+    static final int MAX_TERM_LENGTH = 32;
+    static final int MAX_QUERY_WORDS = 8;
+    private static final int MIN_PART_LENGTH = 2;
+
+    private final Map<String, Postings> terms = new HashMap<>();
+    private final TreeMap<String, Postings> sortedTerms = new TreeMap<>();
+    private long postingBytes;
+
+    void add(int row, String name, String description) {
+        for (String term : terms(name, description)) {
+            add(row, term);
+        }
+    }
+
+    void remove(int row, String name, String description) {
+        for (String term : terms(name, description)) {
+            remove(row, term);
+        }
+    }
+
+    /** Solo toca los términos que cambian, que en un renombrado suelen ser pocos. */
+    void update(int row, String previousName, String previousDescription, String name, String description) {
+        Set<String> previous = terms(previousName, previousDescription);
+        Set<String> current = terms(name, description);
+        for (String term : previous) {
+            if (!current.contains(term)) {
+                remove(row, term);
+            }
+        }
+        for (String term : current) {
+            if (!previous.contains(term)) {
+                add(row, term);
+            }
+        }
+    }
+
+    /**
+     * Filas que, para cada palabra, contienen algún término que empieza por ella; null
+     * si no hay palabras. Se empieza por la palabra con menos filas candidatas.
+     */
+    BitSet matches(List<String> words) {
+        if (words.isEmpty()) {
+            return null;
+        }
+        List<Map<String, Postings>> ranges = new ArrayList<>(words.size());
+        for (String word : words) {
+            Map<String, Postings> range = sortedTerms.subMap(word, true, word + Character.MAX_VALUE, false);
+            if (range.isEmpty()) {
+                return new BitSet();
+            }
+            ranges.add(range);
+        }
+        ranges.sort((a, b) -> Long.compare(count(a), count(b)));
+
+        BitSet result = union(ranges.get(0));
+        for (int i = 1; i < ranges.size() && !result.isEmpty(); i++) {
+            result.and(union(ranges.get(i)));
+        }
+        return result;
+    }
+
+    int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Copia para el snapshot de la vista, con las filas traducidas a su posición en él
+     * ({@code positions[fila]}).
+     */
+    Snapshot snapshot(int[] positions) {
+        long total = 0;
+        for (Postings postings : sortedTerms.values()) {
+            total += postings.size;
+        }
+        List<String> snapshotTerms = new ArrayList<>(sortedTerms.size());
+        int[] sizes = new int[sortedTerms.size()];
+        int[] rows = new int[Math.toIntExact(total)];
+        int term = 0;
+        int used = 0;
+        for (Map.Entry<String, Postings> entry : sortedTerms.entrySet()) {
+            snapshotTerms.add(entry.getKey());
+            int start = used;
+            used = entry.getValue().copyTo(positions, rows, used);
+            Arrays.sort(rows, start, used);
+            sizes[term++] = used - start;
+        }
+        return new Snapshot(snapshotTerms, sizes, rows);
+    }
+
+    static FileSearchIndex restore(Snapshot snapshot) {
+        FileSearchIndex index = new FileSearchIndex();
+        int offset = 0;
+        for (int term = 0; term < snapshot.sizes().length; term++) {
+            Postings postings = Postings.of(snapshot.rows(), offset, snapshot.sizes()[term]);
+            offset += snapshot.sizes()[term];
+            index.terms.put(snapshot.terms().get(term), postings);
+            index.sortedTerms.put(snapshot.terms().get(term), postings);
+            index.postingBytes += postings.bytes();
+        }
+        return index;
+    }
+
+    long estimatedBytes() {
+        // Entradas de los dos mapas, String y Postings por término más las filas
+        return terms.size() * 160L + postingBytes;
+    }
+
+    private void add(int row, String term) {
+        Postings postings = terms.get(term);
+        if (postings == null) {
+            postings = new Postings();
+            terms.put(term, postings);
+            sortedTerms.put(term, postings);
+            postingBytes += postings.bytes();
+        }
+        long before = postings.bytes();
+        postings.add(row);
+        postingBytes += postings.bytes() - before;
+    }
+
+    private void remove(int row, String term) {
+        Postings postings = terms.get(term);
+        if (postings == null) {
+            return;
+        }
+        long before = postings.bytes();
+        postings.remove(row);
+        postingBytes += postings.bytes() - before;
+        if (postings.size == 0) {
+            postingBytes -= postings.bytes();
+            terms.remove(term);
+            sortedTerms.remove(term);
+        }
+    }
+
+    /** Palabras de una consulta: se parte solo por separadores, cada una es un prefijo. */
+    static List<String> words(String query) {
+        Set<String> words = new LinkedHashSet<>();
+        if (query != null) {
+            String normalized = normalize(query).toLowerCase(Locale.ROOT);
+            int start = -1;
+            for (int i = 0; i <= normalized.length() && words.size() < MAX_QUERY_WORDS; i++) {
+                boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+                if (wordChar && start < 0) {
+                    start = i;
+                } else if (!wordChar && start >= 0) {
+                    words.add(truncate(normalized.substring(start, i)));
+                    start = -1;
+                }
+            }
+        }
+        return List.copyOf(words);
+    }
+
+    /** Términos distintos de los textos de una fila. */
+    static Set<String> terms(String... texts) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            String normalized = normalize(text);
+            int start = -1;
+            for (int i = 0; i <= normalized.length(); i++) {
+                boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+                if (wordChar && start < 0) {
+                    start = i;
+                } else if (!wordChar && start >= 0) {
+                    addRun(terms, normalized, start, i);
+                    start = -1;
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static void addRun(Set<String> terms, String text, int start, int end) {
+        terms.add(truncate(text.substring(start, end).toLowerCase(Locale.ROOT)));
+        int segmentStart = start;
+        for (int i = start + 1; i <= end; i++) {
+            if (i == end || isSegmentStart(text.charAt(i - 1), text.charAt(i))) {
+                if (segmentStart > start || i < end) {
+                    addPart(terms, text, segmentStart, i);
+                }
+                addDigitParts(terms, text, segmentStart, i);
+                segmentStart = i;
+            }
+        }
+    }
+
+    private static boolean isSegmentStart(char previous, char current) {
+        return Character.isUpperCase(current) && (Character.isLowerCase(previous) || Character.isDigit(previous));
+    }
+
+    /** Dentro de un segmento, los tramos de letras y de dígitos ("informe2024" da informe y 2024). */
+    private static void addDigitParts(Set<String> terms, String text, int start, int end) {
+        int partStart = start;
+        for (int i = start + 1; i <= end; i++) {
+            if (i == end || Character.isDigit(text.charAt(i - 1)) != Character.isDigit(text.charAt(i))) {
+                if (partStart > start || i < end) {
+                    addPart(terms, text, partStart, i);
+                }
+                partStart = i;
+            }
+        }
+    }
+
+    /** Las partes de un carácter no se indexan: no aportan nada que no dé ya el prefijo. */
+    private static void addPart(Set<String> terms, String text, int start, int end) {
+        if (end - start >= MIN_PART_LENGTH) {
+            terms.add(truncate(text.substring(start, end).toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    /** Quita las tildes y demás marcas diacríticas; los textos ASCII se devuelven tal cual. */
+    private static String normalize(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+            }
+        }
+        return text;
+    }
+
+    private static String truncate(String term) {
+        return term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term;
+    }
+
+    private static long count(Map<String, Postings> range) {
+        long count = 0;
+        for (Postings postings : range.values()) {
+            count += postings.size;
+        }
+        return count;
+    }
+
+    private static BitSet union(Map<String, Postings> range) {
+        BitSet rows = new BitSet();
+        for (Postings postings : range.values()) {
+            postings.addTo(rows);
+        }
+        return rows;
+    }
+
+    /** Términos en orden; las filas de cada uno, ordenadas y concatenadas en {@code rows}. */
+    record Snapshot(List<String> terms, int[] sizes, int[] rows) {
+    }
+
+    /**
+     * Filas de un término: array ordenado mientras son pocas y bitmap cuando están en al
+     * menos una de cada 32 filas, que ocupa menos y se añade y quita sin desplazar nada.
+     * Las filas nuevas tienen el número más alto, así que casi siempre van al final.
+     */
+    private static final class Postings {
+
+        private static final int MIN_DENSE_SIZE = 1024;
+
+        private int[] rows = new int[2];
+        private BitSet dense;
+        private int size;
+
+        /** Desde {@code count} filas ordenadas a partir de {@code from}. */
+        static Postings of(int[] sorted, int from, int count) {
+            Postings postings = new Postings();
+            postings.rows = Arrays.copyOfRange(sorted, from, from + count);
+            postings.size = count;
+            if (count >= MIN_DENSE_SIZE && (long) count * 32 >= sorted[from + count - 1]) {
+                postings.toDense();
+            }
+            return postings;
+        }
+
+        void add(int row) {
+            if (dense != null) {
+                if (!dense.get(row)) {
+                    dense.set(row);
+                    size++;
+                }
+                return;
+            }
+            int position = size > 0 && rows[size - 1] < row ? size : Arrays.binarySearch(rows, 0, size, row);
+            if (position >= 0 && position < size) {
+                return;
+            }
+            if (position < 0) {
+                position = -position - 1;
+            }
+            if (size == rows.length) {
+                if (size >= MIN_DENSE_SIZE && (long) size * 32 >= rows[size - 1]) {
+                    toDense();
+                    add(row);
+                    return;
+                }
+                rows = Arrays.copyOf(rows, size + Math.max(2, size >> 1));
+            }
+            System.arraycopy(rows, position, rows, position + 1, size - position);
+            rows[position] = row;
+            size++;
+        }
+
+        void remove(int row) {
+            if (dense != null) {
+                if (dense.get(row)) {
+                    dense.clear(row);
+                    size--;
+                    // Con histéresis respecto al paso a bitmap
+                    if ((long) size * 64 < dense.length()) {
+                        toSparse();
+                    }
+                }
+                return;
+            }
+            int position = Arrays.binarySearch(rows, 0, size, row);
+            if (position >= 0) {
+                System.arraycopy(rows, position + 1, rows, position, size - position - 1);
+                size--;
+            }
+        }
+
+        void addTo(BitSet target) {
+            if (dense != null) {
+                target.or(dense);
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                target.set(rows[i]);
+            }
+        }
+
+        /** Copia las filas traducidas con {@code positions} y devuelve el nuevo offset. */
+        int copyTo(int[] positions, int[] target, int offset) {
+            if (dense != null) {
+                for (int row = dense.nextSetBit(0); row >= 0; row = dense.nextSetBit(row + 1)) {
+                    target[offset++] = positions[row];
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    target[offset++] = positions[rows[i]];
+                }
+            }
+            return offset;
+        }
+
+        long bytes() {
+            return dense != null ? dense.size() / Byte.SIZE : (long) rows.length * Integer.BYTES;
+        }
+
+        private void toDense() {
+            dense = new BitSet(rows[size - 1] + 1);
+            for (int i = 0; i < size; i++) {
+                dense.set(rows[i]);
+            }
+            rows = null;
+        }
+
+        private void toSparse() {
+            rows = dense.stream().toArray();
+            dense = null;
+        }
+    }
+}
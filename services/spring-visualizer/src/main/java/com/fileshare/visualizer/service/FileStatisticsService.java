@@ -0,0 +1,533 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.config.StompSubscriptions;
+import com.fileshare.visualizer.dto.FileStatsDto;
+import com.fileshare.visualizer.dto.UserFileStatsDto;
+import com.fileshare.visualizer.model.FileMetadata;
+import com.fileshare.visualizer.model.FileMetadataChange;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Agregados del dashboard (totales, por estado, por tipo de contenido, cifrados y por
+ * usuario) mantenidos en memoria. Se calculan una vez con una agregación sobre
+ * file_metadata y después se ajustan con cada {@link FileMetadataChange}, restando el
+ * documento anterior y sumando el actual, de modo que leerlos no toca MongoDB.
+ * <p>
+ * Un UPDATE o DELETE sin pre-image no se puede aplicar: se marca la vista como aproximada
+ * y se reconcilia con una nueva agregación en cuanto lo permite min-reconcile-interval.
+ * Además se reconcilia cada reconcile-interval. Los cambios se publican en /topic/stats
+ * como mucho una vez por publish-interval-ms, y solo si hay alguna suscripción.
+ * <p>
+ * Cada cambio se aplica una sola vez y en orden: se guarda la posición en el change stream
+ * (el _data del resume token, que compara en el orden del oplog) del último aplicado y se
+ * descarta cualquiera que no sea posterior.
+ * <p>
+ * Tras restaurar un snapshot los contadores se sirven de inmediato y se ponen al día con
+ * los cambios que {@link FileListView} reproduce desde el resume token del snapshot; los
+ * que llegan en vivo mientras tanto se retienen y se aplican al terminar. Solo quedan
+ * aproximados (y se reconcilian) si esa reproducción falla, si el token ya no está en el
+ * oplog o si los contadores del snapshot iban por detrás de la vista.
+ * <p>
+ * Las agregaciones corren en un hilo propio y no en el scheduler del broker STOMP,
+ * que es el que recogería {@code @Scheduled}.
+ */
+@Slf4j
+@Service
+public class FileStatisticsService {
+
+    private static final String UNKNOWN = "unknown";
+    private static final String STATS_TOPIC = "/topic/stats";
+
+    private final MongoTemplate mongoTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StompSubscriptions subscriptions;
+    private final FileChangeStreamListener changeStream;
+    private final Duration reconcileInterval;
+    private final Duration minReconcileInterval;
+    private final long checkIntervalMs;
+    private final long publishIntervalMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("file-stats").daemon(true).factory());
+
+    // null hasta la primera agregación correcta
+    private volatile Counters counters;
+    private volatile LocalDateTime reconciledAt;
+    // Última agregación o restauración; los intervalos de reconciliación cuentan desde aquí
+    private volatile LocalDateTime lastRefresh;
+
+    private final AtomicBoolean drift = new AtomicBoolean();
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    private final ReentrantLock applyLock = new ReentrantLock();
+    // Protegidos por applyLock: posición del último cambio aplicado, los cambios en vivo
+    // retenidos mientras se pone al día tras restaurar y los aplicados durante una agregación
+    private String position;
+    private List<FileMetadataChange> held;
+    private List<FileMetadataChange> appliedWhileReconciling;
+
+    public FileStatisticsService(MongoTemplate mongoTemplate,
+                                 SimpMessagingTemplate messagingTemplate,
+                                 StompSubscriptions subscriptions,
+                                 FileChangeStreamListener changeStream,
+                                 @Value("${visualizer.stats.reconcile-interval:15m}") Duration reconcileInterval,
+                                 @Value("${visualizer.stats.min-reconcile-interval:30s}") Duration minReconcileInterval,
+                                 @Value("${visualizer.stats.check-interval-ms:5000}") long checkIntervalMs,
+                                 @Value("${visualizer.stats.publish-interval-ms:1000}") long publishIntervalMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.subscriptions = subscriptions;
+        this.changeStream = changeStream;
+        this.reconcileInterval = reconcileInterval;
+        this.minReconcileInterval = minReconcileInterval;
+        this.checkIntervalMs = checkIntervalMs;
+        this.publishIntervalMs = publishIntervalMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::reconcileIfDue, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::publishIfChanged, publishIntervalMs, publishIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /** Agregados actuales; vacío hasta que la primera agregación termina. */
+    public Optional<FileStatsDto> getStats() {
+        Counters current = counters;
+        if (current == null) {
+            return Optional.empty();
+        }
+        long files = current.files.sum();
+        long encrypted = current.encrypted.sum();
+        return Optional.of(FileStatsDto.builder()
+                .totalFiles(files)
+                .totalBytes(current.bytes.sum())
+                .encryptedFiles(encrypted)
+                .plaintextFiles(files - encrypted)
+                .users(current.users.size())
+                .byStatus(nonZero(current.byStatus))
+                .byContentType(nonZero(current.byContentType))
+                .reconciledAt(reconciledAt)
+                .approximate(drift.get())
+                .build());
+    }
+
+    public Optional<UserFileStatsDto> getUserStats(String userId) {
+        Counters current = counters;
+        if (current == null) {
+            return Optional.empty();
+        }
+        String key = userId.toLowerCase();
+        UserCounters user = current.users.get(key);
+        return Optional.of(UserFileStatsDto.builder()
+                .userId(key)
+                .files(user != null ? user.files.sum() : 0)
+                .bytes(user != null ? user.bytes.sum() : 0)
+                .build());
+    }
+
+    /** Total de archivos si los contadores ya están cargados. */
+    public Optional<Long> getTotalFiles() {
+        Counters current = counters;
+        return current != null ? Optional.of(current.files.sum()) : Optional.empty();
+    }
+
+    /**
+     * Los eventos llegan de uno en uno desde el hilo del change stream; las lecturas
+     * concurrentes solo suman los adders.
+     */
+    @EventListener
+    public void onFileChange(FileMetadataChange change) {
+        applyLock.lock();
+        try {
+            if (held != null) {
+                held.add(change);
+                return;
+            }
+            applyInOrder(change);
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    /** Cambio reproducido por {@link FileListView} al ponerse al día tras restaurar. */
+    void replay(FileMetadataChange change) {
+        applyLock.lock();
+        try {
+            applyInOrder(change);
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    /**
+     * Fin de la reproducción tras restaurar: aplica los cambios en vivo retenidos y, si no
+     * se completó, marca los contadores como aproximados. No hace nada si no se restauró.
+     */
+    void finishReplay(boolean complete) {
+        applyLock.lock();
+        try {
+            if (held == null) {
+                return;
+            }
+            List<FileMetadataChange> changes = held;
+            held = null;
+            if (!complete) {
+                drift.set(true);
+                log.info("Statistics could not catch up from snapshot, reconciling");
+            }
+            changes.forEach(this::applyInOrder);
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    private void applyInOrder(FileMetadataChange change) {
+        String changePosition = position(change.getResumeToken());
+        if (changePosition != null && position != null && changePosition.compareTo(position) <= 0) {
+            // Ya contado: llegó por la reproducción y por el stream en vivo
+            return;
+        }
+        apply(change);
+        if (appliedWhileReconciling != null) {
+            appliedWhileReconciling.add(change);
+        }
+        if (changePosition != null) {
+            position = changePosition;
+        }
+    }
+
+    private void apply(FileMetadataChange change) {
+        Counters current = counters;
+        if (current == null) {
+            return;
+        }
+        if (!apply(current, change)) {
+            if (drift.compareAndSet(false, true)) {
+                log.debug("{} for document {} without pre-image, statistics need reconciling",
+                        change.getType(), change.getDocumentId());
+            }
+            return;
+        }
+        changed.set(true);
+    }
+
+    /** Resta el documento anterior y suma el actual; false si falta alguno de los dos. */
+    private static boolean apply(Counters target, FileMetadataChange change) {
+        FileMetadata previous = change.getPrevious();
+        FileMetadata next = change.getCurrent();
+        boolean applicable = switch (change.getType()) {
+            case INSERT -> next != null;
+            case UPDATE -> previous != null && next != null;
+            case DELETE -> previous != null;
+        };
+        if (!applicable) {
+            return false;
+        }
+        if (change.getType() != FileMetadataChange.Type.INSERT) {
+            target.add(previous, -1);
+        }
+        if (change.getType() != FileMetadataChange.Type.DELETE) {
+            target.add(next, 1);
+        }
+        return true;
+    }
+
+    /** Copia de los contadores para {@link VisualizerSnapshotService}; vacío si aún no hay. */
+    Optional<Snapshot> snapshot() {
+        // Con applyLock los contadores y su posición corresponden al mismo cambio
+        applyLock.lock();
+        try {
+            Counters current = counters;
+            if (current == null || held != null) {
+                return Optional.empty();
+            }
+            List<UserTotals> users = new ArrayList<>(current.users.size());
+            current.users.forEach((userId, user) ->
+                    users.add(new UserTotals(userId, user.files.sum(), user.bytes.sum())));
+            return Optional.of(new Snapshot(current.files.sum(), current.bytes.sum(), current.encrypted.sum(),
+                    nonZero(current.byStatus), nonZero(current.byContentType), users, reconciledAt, position));
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    /**
+     * Restaura los contadores de un snapshot. Si su posición no va por detrás del resume
+     * token de la vista ({@code viewResumeToken}), la reproducción de la vista los pone al
+     * día y no hace falta reconciliar; mientras tanto se retienen los cambios en vivo.
+     */
+    void restore(Snapshot snapshot, String viewResumeToken) {
+        Counters restored = new Counters();
+        restored.files.add(snapshot.files());
+        restored.bytes.add(snapshot.bytes());
+        restored.encrypted.add(snapshot.encrypted());
+        snapshot.byStatus().forEach((key, value) ->
+                restored.byStatus.computeIfAbsent(key, k -> new LongAdder()).add(value));
+        snapshot.byContentType().forEach((key, value) ->
+                restored.byContentType.computeIfAbsent(key, k -> new LongAdder()).add(value));
+        for (UserTotals totals : snapshot.users()) {
+            UserCounters user = new UserCounters();
+            user.files.add(totals.files());
+            user.bytes.add(totals.bytes());
+            restored.users.put(totals.userId(), user);
+        }
+
+        String viewPosition = position(viewResumeToken);
+        boolean replayable = snapshot.position() != null && viewPosition != null
+                && viewPosition.compareTo(snapshot.position()) <= 0;
+        applyLock.lock();
+        try {
+            counters = restored;
+            reconciledAt = snapshot.reconciledAt();
+            lastRefresh = LocalDateTime.now();
+            position = snapshot.position();
+            held = replayable ? new ArrayList<>() : null;
+            drift.set(!replayable);
+            changed.set(true);
+        } finally {
+            applyLock.unlock();
+        }
+        if (!replayable) {
+            log.info("Statistics snapshot is behind the file list view, reconciling");
+        }
+    }
+
+    /** _data del resume token, o null si no lo tiene. */
+    static String position(String resumeToken) {
+        if (resumeToken == null) {
+            return null;
+        }
+        BsonValue data = BsonDocument.parse(resumeToken).get("_data");
+        return data != null && data.isString() ? data.asString().getValue() : null;
+    }
+
+    private void reconcileIfDue() {
+        if (isReplaying()) {
+            return;
+        }
+        LocalDateTime last = lastRefresh;
+        LocalDateTime now = LocalDateTime.now();
+        boolean due = last == null
+                || !now.isBefore(last.plus(reconcileInterval))
+                || (drift.get() && !now.isBefore(last.plus(minReconcileInterval)));
+        if (due) {
+            reconcile();
+        }
+    }
+
+    private boolean isReplaying() {
+        applyLock.lock();
+        try {
+            return held != null;
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    private void publishIfChanged() {
+        // Sin suscriptores el cambio queda pendiente para el primero que llegue
+        if (!subscriptions.hasSubscribers(STATS_TOPIC) || !changed.getAndSet(false)) {
+            return;
+        }
+        getStats().ifPresent(stats -> {
+            try {
+                messagingTemplate.convertAndSend(STATS_TOPIC, stats);
+            } catch (Exception e) {
+                log.error("Error sending statistics: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Recalcula todos los contadores con una sola agregación agrupada por
+     * (userId, status, contentType, isEncrypted), leída en streaming.
+     * <p>
+     * La agregación ya incluye los cambios hasta la posición actual del change stream,
+     * aunque aún no hayan llegado como eventos. Los que se aplican mientras corre se
+     * guardan y, antes de sustituir los contadores, se vuelven a aplicar sobre el resultado
+     * los posteriores a esa posición. Solo quedan aproximados si alguno de ellos no se
+     * puede aplicar o no se puede ordenar respecto a la agregación.
+     */
+    void reconcile() {
+        long start = System.nanoTime();
+        String startPosition = position(changeStream.currentResumeToken());
+        applyLock.lock();
+        try {
+            appliedWhileReconciling = new ArrayList<>();
+        } finally {
+            applyLock.unlock();
+        }
+
+        Counters rebuilt = new Counters();
+        Aggregation aggregation = Aggregation.newAggregation(
+                        Aggregation.group("userId", "status", "contentType", "isEncrypted")
+                                .count().as("files")
+                                .sum("fileSize").as("bytes"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        try (Stream<Document> groups = mongoTemplate.aggregateStream(
+                aggregation, mongoTemplate.getCollectionName(FileMetadata.class), Document.class)) {
+            groups.forEach(group -> {
+                Document key = group.get("_id", Document.class);
+                rebuilt.add(userKey(key.get("userId")), text(key.get("status")), text(key.get("contentType")),
+                        Boolean.TRUE.equals(key.get("isEncrypted")),
+                        number(group.get("files")), number(group.get("bytes")));
+            });
+        } catch (RuntimeException e) {
+            applyLock.lock();
+            try {
+                appliedWhileReconciling = null;
+            } finally {
+                applyLock.unlock();
+            }
+            log.warn("Could not compute file statistics: {}", e.getMessage());
+            return;
+        }
+
+        Counters previous;
+        boolean exact = true;
+        applyLock.lock();
+        try {
+            for (FileMetadataChange change : appliedWhileReconciling) {
+                String changePosition = position(change.getResumeToken());
+                if (startPosition == null || changePosition == null) {
+                    exact = false;
+                } else if (changePosition.compareTo(startPosition) > 0 && !apply(rebuilt, change)) {
+                    exact = false;
+                }
+            }
+            appliedWhileReconciling = null;
+            previous = counters;
+            counters = rebuilt;
+            if (startPosition != null && (position == null || startPosition.compareTo(position) > 0)) {
+                position = startPosition;
+            }
+            drift.set(!exact);
+        } finally {
+            applyLock.unlock();
+        }
+        reconciledAt = LocalDateTime.now();
+        lastRefresh = reconciledAt;
+        changed.set(true);
+
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        if (previous == null) {
+            log.info("File statistics loaded in {} ms: {} files", elapsedMs, rebuilt.files.sum());
+        } else {
+            log.info("File statistics reconciled in {} ms: {} files (was {})",
+                    elapsedMs, rebuilt.files.sum(), previous.files.sum());
+        }
+        if (!exact) {
+            log.debug("Changes applied during the aggregation could not be ordered, statistics stay approximate");
+        }
+    }
+
+    private static Map<String, Long> nonZero(Map<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((key, adder) -> {
+            long value = adder.sum();
+            if (value != 0) {
+                result.put(key, value);
+            }
+        });
+        return result;
+    }
+
+    private static String text(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /** userId se guarda como GUID en texto; el UUID del modelo se serializa en minúsculas. */
+    private static String userKey(Object value) {
+        return value != null ? value.toString().toLowerCase() : null;
+    }
+
+    private static long number(Object value) {
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+
+    /** {@code position}: _data del resume token del último cambio incluido, o null. */
+    record Snapshot(long files, long bytes, long encrypted,
+                    Map<String, Long> byStatus, Map<String, Long> byContentType,
+                    List<UserTotals> users, LocalDateTime reconciledAt, String position) {
+    }
+
+    record UserTotals(String userId, long files, long bytes) {
+    }
+
+    private static final class Counters {
+
+        private final LongAdder files = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder encrypted = new LongAdder();
+        private final ConcurrentHashMap<String, LongAdder> byStatus = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, LongAdder> byContentType = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, UserCounters> users = new ConcurrentHashMap<>();
+
+        private void add(FileMetadata metadata, int sign) {
+            add(metadata.getUserId() != null ? metadata.getUserId().toString() : null,
+                    metadata.getStatus(), metadata.getContentType(),
+                    Boolean.TRUE.equals(metadata.getIsEncrypted()),
+                    sign, sign * (metadata.getFileSize() != null ? metadata.getFileSize() : 0));
+        }
+
+        private void add(String userId, String status, String contentType, boolean isEncrypted,
+                         long fileCount, long fileBytes) {
+            files.add(fileCount);
+            bytes.add(fileBytes);
+            if (isEncrypted) {
+                encrypted.add(fileCount);
+            }
+            byStatus.computeIfAbsent(status != null ? status : UNKNOWN, k -> new LongAdder()).add(fileCount);
+            byContentType.computeIfAbsent(contentType != null ? contentType : UNKNOWN, k -> new LongAdder())
+                    .add(fileCount);
+
+            String userKey = userId != null ? userId : UNKNOWN;
+            UserCounters user = users.computeIfAbsent(userKey, k -> new UserCounters());
+            user.files.add(fileCount);
+            user.bytes.add(fileBytes);
+            // Un solo escritor: quitar al usuario que se queda sin archivos no pierde sumas
+            if (user.files.sum() <= 0) {
+                users.remove(userKey, user);
+            }
+        }
+    }
+
+    private static final class UserCounters {
+        private final LongAdder files = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+    }
+}
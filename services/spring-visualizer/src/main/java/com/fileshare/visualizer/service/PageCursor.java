@@ -0,0 +1,40 @@
+package com.fileshare.visualizer.service;
+
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Clave (createdAt, _id) de la paginación keyset. Se entrega al cliente como base64
+ * url-safe opaco, igual la sirva MongoDB o {@link FileListView}.
+ */
+record PageCursor(LocalDateTime createdAt, String id) {
+
+    /** Null si el documento no tiene createdAt: no se puede seguir paginando por él. */
+    static String encode(LocalDateTime createdAt, String id) {
+        if (createdAt == null) {
+            return null;
+        }
+        String key = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    static PageCursor decode(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = key.split("\\|", 2);
+            if (parts.length != 2 || !ObjectId.isValid(parts[1])) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new PageCursor(LocalDateTime.parse(parts[0]), parts[1]);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.dto.DownloadUrlDto;
+import com.fileshare.visualizer.dto.FileInfoDto;
+import com.fileshare.visualizer.soap.LastKnownGoodStore;
+import com.fileshare.visualizer.soap.ReactiveSoapResponseParser;
+import com.fileshare.visualizer.soap.SoapEnvelope;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Variante no bloqueante de {@link SoapClientService} sobre WebClient. Comparte con la
+ * versión bloqueante las instancias "soapService" de circuit breaker y retry, porque
+ * ambas protegen el mismo soap-service, y devuelve los mismos fallbacks.
+ * <p>
+ * No pasa por las cachés de {@link SoapClientService}: cada suscripción hace su llamada.
+ * Como {@link com.fileshare.visualizer.soap.SoapFileGateway}, guarda cada respuesta correcta en
+ * {@link LastKnownGoodStore}, que los fallbacks usan para devolver datos stale.
+ * <p>
+ * Una respuesta que supera soap.client.reactive.max-in-memory-size es un límite local: no
+ * cuenta en el circuit breaker (ignoreExceptions) y se propaga en lugar de servir el fallback.
+ */
+@Slf4j
+@Service
+public class ReactiveSoapClientService {
+
+    private static final String SOAP_SERVICE = "soapService";
+    private static final int ENVELOPE_INITIAL_CAPACITY = 512;
+
+    private final WebClient webClient;
+    private final ReactiveSoapResponseParser responseParser;
+    private final LastKnownGoodStore lastKnownGood;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    public ReactiveSoapClientService(WebClient soapWebClient,
+                                     ReactiveSoapResponseParser responseParser,
+                                     LastKnownGoodStore lastKnownGood,
+                                     CircuitBreakerRegistry circuitBreakerRegistry,
+                                     RetryRegistry retryRegistry) {
+        this.webClient = soapWebClient;
+        this.responseParser = responseParser;
+        this.lastKnownGood = lastKnownGood;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(SOAP_SERVICE);
+        this.retry = retryRegistry.retry(SOAP_SERVICE);
+    }
+
+    public Mono<FileInfoDto> getFile(String fileId) {
+        return sendSoapRequest(SoapEnvelope.GET_FILE, responseParser::parseFile, fileId)
+                .doOnSubscribe(s -> log.info("Getting file info via reactive SOAP for fileId: {}", fileId))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(RetryOperator.of(retry))
+                .doOnNext(lastKnownGood::putFile)
+                .switchIfEmpty(Mono.fromRunnable(() -> lastKnownGood.remove(fileId, null)))
+                .onErrorResume(ReactiveSoapClientService::isServiceFailure, ex -> {
+                    log.error("Circuit breaker fallback for reactive getFile. FileId: {}, Error: {}",
+                            fileId, ex.getMessage());
+                    return Mono.just(lastKnownGood.staleFile(fileId).orElseGet(() -> FileInfoDto.builder()
+                            .fileId(fileId)
+                            .fileName("Service unavailable")
+                            .status("ERROR")
+                            .description("SOAP service is temporarily unavailable. Please try again later.")
+                            .build()));
+                });
+    }
+
+    /**
+     * Emite cada archivo en cuanto se parsea su FileInfo. Un retry vuelve a suscribirse
+     * desde el principio; solo se reintentan errores de conexión, que ocurren antes del primer elemento.
+     * La lista se guarda en {@link LastKnownGoodStore} solo si la respuesta llega completa.
+     */
+    public Flux<FileInfoDto> getUserFiles(String userId) {
+        return Flux.defer(() -> {
+                    List<FileInfoDto> files = new ArrayList<>();
+                    return sendSoapRequestMany(SoapEnvelope.GET_USER_FILES, responseParser::parseFiles, userId)
+                            .doOnNext(files::add)
+                            .doOnComplete(() -> lastKnownGood.putUserFiles(userId, files));
+                })
+                .doOnSubscribe(s -> log.info("Getting user files via reactive SOAP for userId: {}", userId))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(RetryOperator.of(retry))
+                .onErrorResume(ReactiveSoapClientService::isServiceFailure, ex -> {
+                    log.error("Circuit breaker fallback for reactive getUserFiles. UserId: {}, Error: {}",
+                            userId, ex.getMessage());
+                    return Flux.fromIterable(lastKnownGood.staleUserFiles(userId).orElse(List.of()));
+                });
+    }
+
+    public Mono<DownloadUrlDto> getDownloadUrl(String fileId, int expiryInSeconds) {
+        return sendSoapRequest(SoapEnvelope.GET_DOWNLOAD_URL, responseParser::parseDownloadUrl,
+                fileId, Integer.toString(expiryInSeconds))
+                .doOnSubscribe(s -> log.info("Getting download URL via reactive SOAP for fileId: {}", fileId))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(RetryOperator.of(retry))
+                .onErrorResume(ReactiveSoapClientService::isServiceFailure, ex -> {
+                    log.error("Circuit breaker fallback for reactive getDownloadUrl. FileId: {}, Error: {}",
+                            fileId, ex.getMessage());
+                    return Mono.just(DownloadUrlDto.builder()
+                            .downloadUrl(null)
+                            .error("Service temporarily unavailable")
+                            .build());
+                });
+    }
+
+    public Mono<Boolean> deleteFile(String fileId, String userId) {
+        return sendSoapRequest(SoapEnvelope.DELETE_FILE, responseParser::parseSuccess, fileId, userId)
+                .doOnSubscribe(s -> log.info("Deleting file via reactive SOAP for fileId: {}, userId: {}",
+                        fileId, userId))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(RetryOperator.of(retry))
+                .doOnNext(deleted -> {
+                    if (deleted) {
+                        lastKnownGood.remove(fileId, userId);
+                    }
+                })
+                .onErrorResume(ReactiveSoapClientService::isServiceFailure, ex -> {
+                    log.error("Circuit breaker fallback for reactive deleteFile. FileId: {}, UserId: {}, Error: {}",
+                            fileId, userId, ex.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    private static boolean isServiceFailure(Throwable error) {
+        return error instanceof Exception && !(error instanceof DataBufferLimitException);
+    }
+
+    private <T> Mono<T> sendSoapRequest(SoapEnvelope envelope, Function<Flux<DataBuffer>, Mono<T>> parser,
+                                        String... values) {
+        return parser.apply(exchange(envelope, values));
+    }
+
+    private <T> Flux<T> sendSoapRequestMany(SoapEnvelope envelope, Function<Flux<DataBuffer>, Flux<T>> parser,
+                                            String... values) {
+        return parser.apply(exchange(envelope, values));
+    }
+
+    /**
+     * El sobre se escribe en un DataBuffer al suscribirse; el body de la respuesta llega
+     * como un Flux de fragmentos que el parser consume según va recibiendo.
+     */
+    private Flux<DataBuffer> exchange(SoapEnvelope envelope, String... values) {
+        return webClient.post()
+                .contentType(MediaType.TEXT_XML)
+                .header("SOAPAction", "")
+                .body(BodyInserters.fromDataBuffers(Mono.fromCallable(() -> writeEnvelope(envelope, values))))
+                .retrieve()
+                .bodyToFlux(DataBuffer.class);
+    }
+
+    private DataBuffer writeEnvelope(SoapEnvelope envelope, String... values) throws IOException {
+        DataBuffer buffer = bufferFactory.allocateBuffer(ENVELOPE_INITIAL_CAPACITY);
+        try (OutputStream out = buffer.asOutputStream()) {
+            envelope.writeTo(out, values);
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+        return buffer;
+    }
+}
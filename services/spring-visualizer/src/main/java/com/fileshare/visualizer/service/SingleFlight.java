@@ -0,0 +1,94 @@
+package com.fileshare.visualizer.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa llamadas concurrentes con la misma clave: la primera (líder) ejecuta la
+ * llamada y las demás (seguidoras) esperan y reciben su mismo resultado o excepción.
+ * La clave se libera al terminar, así que no retiene resultados como una caché.
+ * <p>
+ * La llamada corre en un hilo virtual propio y también la líder la espera como una
+ * seguidora: si se interrumpe a quien la lanzó (un lote que vence), deja de esperar pero
+ * la llamada sigue para el resto, sin fallar ni contar como error en el circuit breaker.
+ */
+class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+    private final String threadName;
+
+    SingleFlight(String operation, MeterRegistry meterRegistry) {
+        this.threadName = "single-flight-" + operation;
+        this.leaders = Counter.builder("visualizer.soap.coalescing.calls")
+                .tag("operation", operation).tag("role", "leader")
+                .description("Calls that reached soap-service").register(meterRegistry);
+        this.followers = Counter.builder("visualizer.soap.coalescing.calls")
+                .tag("operation", operation).tag("role", "follower")
+                .description("Calls that shared an in-flight request").register(meterRegistry);
+        Gauge.builder("visualizer.soap.coalescing.ratio", this, SingleFlight::ratio)
+                .tag("operation", operation)
+                .description("Fraction of calls served by an in-flight request").register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, Supplier<T> call) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            followers.increment();
+            return (T) await(existing);
+        }
+
+        leaders.increment();
+        Thread.ofVirtual().name(threadName).start(() -> {
+            Object result = null;
+            Throwable error = null;
+            try {
+                result = call.get();
+            } catch (RuntimeException | Error e) {
+                error = e;
+            } finally {
+                // Antes de completar: quien recibe el resultado y repite la llamada no se une a esta
+                inFlight.remove(key, mine);
+            }
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(result);
+            }
+        });
+        return (T) await(mine);
+    }
+
+    /** Espera interrumpible: quien se cancela (p. ej. en un lote) deja de esperar. */
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for an in-flight call", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private double ratio() {
+        double total = leaders.count() + followers.count();
+        return total == 0 ? 0 : followers.count() / total;
+    }
+}
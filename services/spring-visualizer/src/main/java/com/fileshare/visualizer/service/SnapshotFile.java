@@ -0,0 +1,357 @@
+package com.fileshare.visualizer.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Formato binario del snapshot del visualizador, leído y escrito con un fichero mapeado
+ * en memoria. Big-endian:
+ * <pre>
+ * magic "FSVS" | version | writtenAt (epoch ms) | longitud total
+ * vista:        presente (byte) | resume token | filas | diccionarios | columnas | nombres | descripciones
+ *               | términos de búsqueda | filas por término | filas
+ * estadísticas: presente (byte) | totales | por estado | por tipo | por usuario | reconciledAt | posición
+ * CRC32C de todo lo anterior
+ * </pre>
+ * Un fichero con otra versión, truncado o con el CRC incorrecto se descarta entero.
+ */
+final class SnapshotFile {
+
+    static final int MAGIC = 0x46535653;
+    static final int VERSION = 4;
+
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    record Contents(LocalDateTime writtenAt, FileListView.Snapshot view, FileStatisticsService.Snapshot stats) {
+    }
+
+    private SnapshotFile() {
+    }
+
+    /** Escribe en un temporal junto al destino y lo renombra, para no dejar nunca un snapshot a medias. */
+    static void write(Path path, Contents contents) throws IOException {
+        long size = size(contents);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + size + " bytes exceeds the 2 GB mapping limit");
+        }
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(toMillis(contents.writtenAt()));
+                buffer.putLong(size);
+                writeView(buffer, contents.view());
+                writeStats(buffer, contents.stats());
+
+                CRC32C crc = new CRC32C();
+                crc.update(buffer.slice(0, buffer.position()));
+                buffer.putInt((int) crc.getValue());
+                buffer.force();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @throws IOException si el fichero no es un snapshot válido de esta versión
+     */
+    static Contents read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 28 || size > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected snapshot size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a visualizer snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            LocalDateTime writtenAt = toDateTime(buffer.getLong());
+            if (buffer.getLong() != size) {
+                throw new IOException("Truncated snapshot");
+            }
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(0, (int) size - Integer.BYTES));
+            if (buffer.getInt((int) size - Integer.BYTES) != (int) crc.getValue()) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+
+            try {
+                return new Contents(writtenAt, readView(buffer), readStats(buffer));
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed snapshot: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // --- Vista ---
+
+    private static void writeView(MappedByteBuffer buffer, FileListView.Snapshot view) {
+        buffer.put((byte) (view != null ? 1 : 0));
+        if (view == null) {
+            return;
+        }
+        int rows = view.rows();
+        putString(buffer, view.resumeToken());
+        buffer.putInt(rows);
+        putStrings(buffer, view.users());
+        putStrings(buffer, view.statuses());
+        putStrings(buffer, view.contentTypes());
+        putInts(buffer, view.idHigh(), rows);
+        putLongs(buffer, view.idLow(), rows);
+        putLongs(buffer, view.fileIdMost(), rows);
+        putLongs(buffer, view.fileIdLeast(), rows);
+        putInts(buffer, view.userId(), rows);
+        putInts(buffer, view.status(), rows);
+        putInts(buffer, view.contentType(), rows);
+        putLongs(buffer, view.fileSize(), rows);
+        putLongs(buffer, view.createdAt(), rows);
+        putInts(buffer, view.nameLength(), rows);
+        buffer.putInt(view.names().length);
+        buffer.put(view.names());
+        putInts(buffer, view.descriptionLength(), rows);
+        buffer.putInt(view.descriptions().length);
+        buffer.put(view.descriptions());
+        FileSearchIndex.Snapshot search = view.search();
+        putStrings(buffer, search.terms());
+        putInts(buffer, search.sizes(), search.sizes().length);
+        buffer.putInt(search.rows().length);
+        putInts(buffer, search.rows(), search.rows().length);
+    }
+
+    private static FileListView.Snapshot readView(MappedByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        String token = getString(buffer);
+        int rows = buffer.getInt();
+        List<String> users = getStrings(buffer);
+        List<String> statuses = getStrings(buffer);
+        List<String> contentTypes = getStrings(buffer);
+        int[] idHigh = getInts(buffer, rows);
+        long[] idLow = getLongs(buffer, rows);
+        long[] fileIdMost = getLongs(buffer, rows);
+        long[] fileIdLeast = getLongs(buffer, rows);
+        int[] userId = getInts(buffer, rows);
+        int[] status = getInts(buffer, rows);
+        int[] contentType = getInts(buffer, rows);
+        long[] fileSize = getLongs(buffer, rows);
+        long[] createdAt = getLongs(buffer, rows);
+        int[] nameLength = getInts(buffer, rows);
+        byte[] names = new byte[buffer.getInt()];
+        buffer.get(names);
+        int[] descriptionLength = getInts(buffer, rows);
+        byte[] descriptions = new byte[buffer.getInt()];
+        buffer.get(descriptions);
+        List<String> terms = getStrings(buffer);
+        int[] sizes = getInts(buffer, terms.size());
+        int[] termRows = getInts(buffer, buffer.getInt());
+        return new FileListView.Snapshot(token, rows, idHigh, idLow, fileIdMost, fileIdLeast,
+                userId, status, contentType, fileSize, createdAt, nameLength, names,
+                descriptionLength, descriptions, new FileSearchIndex.Snapshot(terms, sizes, termRows),
+                users, statuses, contentTypes);
+    }
+
+    private static long viewSize(FileListView.Snapshot view) {
+        if (view == null) {
+            return 1;
+        }
+        long rows = view.rows();
+        return 1 + stringSize(view.resumeToken()) + Integer.BYTES
+                + stringsSize(view.users()) + stringsSize(view.statuses()) + stringsSize(view.contentTypes())
+                + rows * (6L * Integer.BYTES + 5L * Long.BYTES)
+                + Integer.BYTES + view.names().length
+                + Integer.BYTES + view.descriptions().length
+                + stringsSize(view.search().terms()) + (long) view.search().sizes().length * Integer.BYTES
+                + Integer.BYTES + (long) view.search().rows().length * Integer.BYTES;
+    }
+
+    // --- Estadísticas ---
+
+    private static void writeStats(MappedByteBuffer buffer, FileStatisticsService.Snapshot stats) {
+        buffer.put((byte) (stats != null ? 1 : 0));
+        if (stats == null) {
+            return;
+        }
+        buffer.putLong(stats.files());
+        buffer.putLong(stats.bytes());
+        buffer.putLong(stats.encrypted());
+        putCounts(buffer, stats.byStatus());
+        putCounts(buffer, stats.byContentType());
+        buffer.putInt(stats.users().size());
+        for (FileStatisticsService.UserTotals user : stats.users()) {
+            putString(buffer, user.userId());
+            buffer.putLong(user.files());
+            buffer.putLong(user.bytes());
+        }
+        buffer.putLong(toMillis(stats.reconciledAt()));
+        putString(buffer, stats.position());
+    }
+
+    private static FileStatisticsService.Snapshot readStats(MappedByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        long files = buffer.getLong();
+        long bytes = buffer.getLong();
+        long encrypted = buffer.getLong();
+        Map<String, Long> byStatus = getCounts(buffer);
+        Map<String, Long> byContentType = getCounts(buffer);
+        int userCount = buffer.getInt();
+        List<FileStatisticsService.UserTotals> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            users.add(new FileStatisticsService.UserTotals(getString(buffer), buffer.getLong(), buffer.getLong()));
+        }
+        LocalDateTime reconciledAt = toDateTime(buffer.getLong());
+        return new FileStatisticsService.Snapshot(files, bytes, encrypted, byStatus, byContentType, users,
+                reconciledAt, getString(buffer));
+    }
+
+    private static long statsSize(FileStatisticsService.Snapshot stats) {
+        if (stats == null) {
+            return 1;
+        }
+        long size = 1 + 3L * Long.BYTES + countsSize(stats.byStatus()) + countsSize(stats.byContentType())
+                + Integer.BYTES + Long.BYTES + stringSize(stats.position());
+        for (FileStatisticsService.UserTotals user : stats.users()) {
+            size += stringSize(user.userId()) + 2L * Long.BYTES;
+        }
+        return size;
+    }
+
+    private static long size(Contents contents) {
+        // Cabecera: magic, versión, writtenAt y longitud; al final el CRC
+        return 2L * Integer.BYTES + 2L * Long.BYTES
+                + viewSize(contents.view()) + statsSize(contents.stats()) + Integer.BYTES;
+    }
+
+    // --- Primitivas ---
+
+    private static void putInts(MappedByteBuffer buffer, int[] values, int count) {
+        buffer.asIntBuffer().put(values, 0, count);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+    }
+
+    private static int[] getInts(MappedByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static void putLongs(MappedByteBuffer buffer, long[] values, int count) {
+        buffer.asLongBuffer().put(values, 0, count);
+        buffer.position(buffer.position() + count * Long.BYTES);
+    }
+
+    private static long[] getLongs(MappedByteBuffer buffer, int count) {
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        return values;
+    }
+
+    /** Longitud -1 para null. */
+    private static void putString(MappedByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long stringSize(String value) {
+        return Integer.BYTES + (value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    private static void putStrings(MappedByteBuffer buffer, List<String> values) {
+        buffer.putInt(values.size());
+        values.forEach(value -> putString(buffer, value));
+    }
+
+    private static List<String> getStrings(MappedByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(getString(buffer));
+        }
+        return values;
+    }
+
+    private static long stringsSize(List<String> values) {
+        long size = Integer.BYTES;
+        for (String value : values) {
+            size += stringSize(value);
+        }
+        return size;
+    }
+
+    private static void putCounts(MappedByteBuffer buffer, Map<String, Long> counts) {
+        buffer.putInt(counts.size());
+        counts.forEach((key, value) -> {
+            putString(buffer, key);
+            buffer.putLong(value);
+        });
+    }
+
+    private static Map<String, Long> getCounts(MappedByteBuffer buffer) {
+        int count = buffer.getInt();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            counts.put(getString(buffer), buffer.getLong());
+        }
+        return counts;
+    }
+
+    private static long countsSize(Map<String, Long> counts) {
+        long size = Integer.BYTES;
+        for (String key : counts.keySet()) {
+            size += stringSize(key) + Long.BYTES;
+        }
+        return size;
+    }
+
+    private static long toMillis(LocalDateTime value) {
+        return value != null ? value.toInstant(ZoneOffset.UTC).toEpochMilli() : NULL_TIME;
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return millis != NULL_TIME ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC) : null;
+    }
+}
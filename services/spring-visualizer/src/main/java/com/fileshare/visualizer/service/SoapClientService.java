@@ -2,329 +2,267 @@ package com.fileshare.visualizer.service;
 
 import com.fileshare.visualizer.dto.DownloadUrlDto;
 import com.fileshare.visualizer.dto.FileInfoDto;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
+import com.fileshare.visualizer.model.FileMetadata;
+import com.fileshare.visualizer.model.FileMetadataChange;
+import com.fileshare.visualizer.soap.LastKnownGoodStore;
+import com.fileshare.visualizer.soap.SoapFileGateway;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.dao.DataAccessException;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.io.StringWriter;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Punto de entrada para las consultas a soap-service. Sirve getFile desde una caché
+ * en proceso acotada por tamaño y TTL, y delega el resto en {@link SoapFileGateway}.
+ * Las entradas se invalidan cuando el documento cambia en file_metadata o se borra
+ * el archivo a través de {@link #deleteFile}.
+ * <p>
+ * Las URLs prefirmadas de descarga se reutilizan por (fileId, tramo de expiración)
+ * hasta un margen de seguridad antes de su expiresAt, y solo mientras les quede al menos
+ * la expiración pedida menos el ancho del tramo.
+ * <p>
+ * Las llamadas concurrentes a getFile o getUserFiles con la misma clave comparten
+ * una sola petición SOAP, de modo que el circuit breaker y los reintentos la cuentan una vez.
+ * <p>
+ * Con visualizer.read-mode=mongo, getFile y getUserFiles se leen directamente de
+ * file_metadata y solo se recurre a SOAP si MongoDB no responde. En ese modo la caché,
+ * la agrupación de llamadas, el hedging y los datos last-known-good solo actúan en esa
+ * vuelta a SOAP; por eso el modo por defecto es soap.
+ */
 @Slf4j
 @Service
 public class SoapClientService {
 
-    private static final String SOAP_SERVICE = "soapService";
-
-    @Value("${soap.client.url}")
-    private String soapUrl;
+    public enum ReadMode { SOAP, MONGO }
+
+    private final SoapFileGateway gateway;
+    private final LastKnownGoodStore lastKnownGood;
+    private final FileMetadataService fileMetadataService;
+    private final ReadMode readMode;
+    private final long mongoRetryAfterMs;
+    private final Cache<String, FileInfoDto> fileCache;
+    private final Cache<DownloadUrlKey, CachedDownloadUrl> downloadUrlCache;
+    private final long expiryBucketSeconds;
+    private final SingleFlight fileFlights;
+    private final SingleFlight userFilesFlights;
+
+    // Se incrementa con cada invalidación: una respuesta que empezó antes no se cachea
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Tras un fallo de MongoDB se va directo a SOAP hasta este instante (epoch ms)
+    private volatile long mongoUnavailableUntil;
+
+    public SoapClientService(SoapFileGateway gateway,
+                             LastKnownGoodStore lastKnownGood,
+                             FileMetadataService fileMetadataService,
+                             MeterRegistry meterRegistry,
+                             @Value("${visualizer.read-mode:soap}") ReadMode readMode,
+                             @Value("${visualizer.mongo-read.retry-after-ms:10000}") long mongoRetryAfterMs,
+                             @Value("${visualizer.cache.files.max-size:10000}") long maxSize,
+                             @Value("${visualizer.cache.files.ttl:5m}") Duration ttl,
+                             @Value("${visualizer.cache.download-urls.max-size:10000}") long downloadUrlMaxSize,
+                             @Value("${visualizer.cache.download-urls.safety-margin:60s}") Duration safetyMargin,
+                             @Value("${visualizer.cache.download-urls.expiry-bucket:300s}") Duration expiryBucket) {
+        this.gateway = gateway;
+        this.lastKnownGood = lastKnownGood;
+        this.fileMetadataService = fileMetadataService;
+        this.readMode = readMode;
+        this.mongoRetryAfterMs = mongoRetryAfterMs;
+        log.info("File lookups served from {}", readMode);
+        this.fileCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, fileCache, "soap.files");
 
-    private final RestTemplate restTemplate;
+        this.expiryBucketSeconds = Math.max(1, expiryBucket.toSeconds());
+        this.downloadUrlCache = Caffeine.newBuilder()
+                .maximumSize(downloadUrlMaxSize)
+                .expireAfter(new DownloadUrlExpiry(safetyMargin))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, downloadUrlCache, "soap.download-urls");
 
-    public SoapClientService() {
-        this.restTemplate = new RestTemplate();
+        this.fileFlights = new SingleFlight("getFile", meterRegistry);
+        this.userFilesFlights = new SingleFlight("getUserFiles", meterRegistry);
     }
 
-    @CircuitBreaker(name = SOAP_SERVICE, fallbackMethod = "getFileFallback")
-    @Retry(name = SOAP_SERVICE)
     public FileInfoDto getFile(String fileId) {
-        log.info("Getting file info via SOAP for fileId: {}", fileId);
-
-        String soapRequest = buildGetFileRequest(fileId);
-        String response = sendSoapRequest(soapRequest);
-        
-        return parseGetFileResponse(response);
-    }
-
-    public FileInfoDto getFileFallback(String fileId, Exception ex) {
-        log.error("Circuit breaker fallback for getFile. FileId: {}, Error: {}", fileId, ex.getMessage());
-        return FileInfoDto.builder()
-                .fileId(fileId)
-                .fileName("Service unavailable")
-                .status("ERROR")
-                .description("SOAP service is temporarily unavailable. Please try again later.")
-                .build();
-    }
-
-    @CircuitBreaker(name = SOAP_SERVICE, fallbackMethod = "getUserFilesFallback")
-    @Retry(name = SOAP_SERVICE)
-    public List<FileInfoDto> getUserFiles(String userId) {
-        log.info("Getting user files via SOAP for userId: {}", userId);
-
-        String soapRequest = buildGetUserFilesRequest(userId);
-        String response = sendSoapRequest(soapRequest);
-        log.debug("SOAP Response for getUserFiles: {}", response);
-        
-        return parseGetUserFilesResponse(response);
-    }
+        if (useMongo()) {
+            try {
+                return fileMetadataService.findFile(fileId).orElse(null);
+            } catch (DataAccessException e) {
+                markMongoUnavailable("getFile", e);
+            }
+        }
 
-    public List<FileInfoDto> getUserFilesFallback(String userId, Exception ex) {
-        log.error("Circuit breaker fallback for getUserFiles. UserId: {}, Error: {}", userId, ex.getMessage());
-        return Collections.emptyList();
+        return getFileFromSoap(fileId);
     }
 
-    @CircuitBreaker(name = SOAP_SERVICE, fallbackMethod = "getDownloadUrlFallback")
-    @Retry(name = SOAP_SERVICE)
-    public DownloadUrlDto getDownloadUrl(String fileId, int expiryInSeconds) {
-        log.info("Getting download URL via SOAP for fileId: {}", fileId);
+    /** getFile siempre por SOAP (caché y agrupación incluidas), sea cual sea read-mode. */
+    public FileInfoDto getFileFromSoap(String fileId) {
+        FileInfoDto cached = fileCache.getIfPresent(fileId);
+        if (cached != null) {
+            log.debug("File info cache hit for fileId: {}", fileId);
+            return cached;
+        }
 
-        String soapRequest = buildGetDownloadUrlRequest(fileId, expiryInSeconds);
-        String response = sendSoapRequest(soapRequest);
-        
-        return parseGetDownloadUrlResponse(response);
+        return fileFlights.execute(fileId, () -> {
+            long generation = invalidations.get();
+            FileInfoDto file = gateway.getFile(fileId);
+            if (isCacheable(file) && generation == invalidations.get()) {
+                fileCache.put(fileId, file);
+            }
+            return file;
+        });
     }
 
-    public DownloadUrlDto getDownloadUrlFallback(String fileId, int expiryInSeconds, Exception ex) {
-        log.error("Circuit breaker fallback for getDownloadUrl. FileId: {}, Error: {}", fileId, ex.getMessage());
-        return DownloadUrlDto.builder()
-                .downloadUrl(null)
-                .error("Service temporarily unavailable")
-                .build();
+    /**
+     * Resultado de getFile si está en la caché, sin llamar a SOAP; null si no está o si
+     * se lee de MongoDB.
+     */
+    public FileInfoDto getCachedFile(String fileId) {
+        return useMongo() ? null : fileCache.getIfPresent(fileId);
     }
 
-    @CircuitBreaker(name = SOAP_SERVICE, fallbackMethod = "deleteFileFallback")
-    @Retry(name = SOAP_SERVICE)
-    public boolean deleteFile(String fileId, String userId) {
-        log.info("Deleting file via SOAP for fileId: {}, userId: {}", fileId, userId);
+    public List<FileInfoDto> getUserFiles(String userId) {
+        if (useMongo()) {
+            try {
+                return fileMetadataService.findUserFiles(userId);
+            } catch (DataAccessException e) {
+                markMongoUnavailable("getUserFiles", e);
+            }
+        }
 
-        String soapRequest = buildDeleteFileRequest(fileId, userId);
-        String response = sendSoapRequest(soapRequest);
-        
-        return parseDeleteFileResponse(response);
+        return getUserFilesFromSoap(userId);
     }
 
-    public boolean deleteFileFallback(String fileId, String userId, Exception ex) {
-        log.error("Circuit breaker fallback for deleteFile. FileId: {}, UserId: {}, Error: {}", 
-                fileId, userId, ex.getMessage());
-        return false;
+    /** getUserFiles siempre por SOAP, sea cual sea read-mode. */
+    public List<FileInfoDto> getUserFilesFromSoap(String userId) {
+        return userFilesFlights.execute(userId, () -> gateway.getUserFiles(userId));
     }
 
-    private String sendSoapRequest(String soapRequest) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.TEXT_XML);
-        headers.set("SOAPAction", "");
-
-        HttpEntity<String> entity = new HttpEntity<>(soapRequest, headers);
-
-        ResponseEntity<String> response = restTemplate.exchange(
-                soapUrl,
-                HttpMethod.POST,
-                entity,
-                String.class
-        );
+    public DownloadUrlDto getDownloadUrl(String fileId, int expiryInSeconds) {
+        DownloadUrlKey key = new DownloadUrlKey(fileId, (expiryInSeconds + expiryBucketSeconds - 1) / expiryBucketSeconds);
+        Instant requestedAt = Instant.now();
+        CachedDownloadUrl cached = downloadUrlCache.getIfPresent(key);
+        // Una URL del mismo tramo sirve si le queda al menos lo pedido menos el ancho del tramo
+        if (cached != null && !cached.expiresAt().isBefore(
+                requestedAt.plusSeconds(expiryInSeconds - expiryBucketSeconds))) {
+            log.debug("Download URL cache hit for fileId: {}", fileId);
+            return cached.url();
+        }
 
-        log.debug("SOAP Response: {}", response.getBody());
-        return response.getBody();
+        long generation = invalidations.get();
+        DownloadUrlDto downloadUrl = gateway.getDownloadUrl(fileId, expiryInSeconds);
+        if (downloadUrl != null && downloadUrl.getDownloadUrl() != null && downloadUrl.getError() == null
+                && generation == invalidations.get()) {
+            downloadUrlCache.put(key, new CachedDownloadUrl(downloadUrl,
+                    expiresAt(downloadUrl, requestedAt.plusSeconds(expiryInSeconds))));
+        }
+        return downloadUrl;
     }
 
-    private String buildGetFileRequest(String fileId) {
-        return String.format("""
-            <?xml version="1.0" encoding="utf-8"?>
-            <soap:Envelope xmlns:soap="http://schemas.xmlsoap.org/soap/envelope/"
-                           xmlns:files="http://fileshare.com/soap/files">
-                <soap:Body>
-                    <files:GetFile>
-                        <files:request>
-                            <files:FileId>%s</files:FileId>
-                        </files:request>
-                    </files:GetFile>
-                </soap:Body>
-            </soap:Envelope>
-            """, fileId);
+    public boolean deleteFile(String fileId, String userId) {
+        boolean deleted = gateway.deleteFile(fileId, userId);
+        if (deleted) {
+            invalidate(fileId);
+        }
+        return deleted;
     }
 
-    private String buildGetUserFilesRequest(String userId) {
-        return String.format("""
-            <?xml version="1.0" encoding="utf-8"?>
-            <soap:Envelope xmlns:soap="http://schemas.xmlsoap.org/soap/envelope/"
-                           xmlns:files="http://fileshare.com/soap/files">
-                <soap:Body>
-                    <files:GetUserFiles>
-                        <files:request>
-                            <files:UserId>%s</files:UserId>
-                        </files:request>
-                    </files:GetUserFiles>
-                </soap:Body>
-            </soap:Envelope>
-            """, userId);
+    @EventListener
+    public void onFileChange(FileMetadataChange change) {
+        FileMetadata metadata = change.latest();
+        boolean deleted = change.getType() == FileMetadataChange.Type.DELETE;
+        if (metadata != null && metadata.getFileId() != null) {
+            String fileId = metadata.getFileId().toString();
+            invalidate(fileId);
+            if (deleted) {
+                lastKnownGood.remove(fileId, metadata.getUserId() != null ? metadata.getUserId().toString() : null);
+            }
+        } else {
+            // Sin fileId (DELETE sin pre-image) no se sabe qué entrada quitar
+            invalidations.incrementAndGet();
+            fileCache.invalidateAll();
+            downloadUrlCache.invalidateAll();
+            if (deleted) {
+                lastKnownGood.clear();
+            }
+        }
     }
 
-    private String buildGetDownloadUrlRequest(String fileId, int expiryInSeconds) {
-        return String.format("""
-            <?xml version="1.0" encoding="utf-8"?>
-            <soap:Envelope xmlns:soap="http://schemas.xmlsoap.org/soap/envelope/"
-                           xmlns:files="http://fileshare.com/soap/files">
-                <soap:Body>
-                    <files:GetDownloadUrl>
-                        <files:request>
-                            <files:FileId>%s</files:FileId>
-                            <files:ExpiryInSeconds>%d</files:ExpiryInSeconds>
-                        </files:request>
-                    </files:GetDownloadUrl>
-                </soap:Body>
-            </soap:Envelope>
-            """, fileId, expiryInSeconds);
+    private boolean useMongo() {
+        return readMode == ReadMode.MONGO && System.currentTimeMillis() >= mongoUnavailableUntil;
     }
 
-    private String buildDeleteFileRequest(String fileId, String userId) {
-        return String.format("""
-            <?xml version="1.0" encoding="utf-8"?>
-            <soap:Envelope xmlns:soap="http://schemas.xmlsoap.org/soap/envelope/"
-                           xmlns:files="http://fileshare.com/soap/files">
-                <soap:Body>
-                    <files:DeleteFile>
-                        <files:request>
-                            <files:FileId>%s</files:FileId>
-                            <files:UserId>%s</files:UserId>
-                        </files:request>
-                    </files:DeleteFile>
-                </soap:Body>
-            </soap:Envelope>
-            """, fileId, userId);
+    private void markMongoUnavailable(String operation, DataAccessException e) {
+        mongoUnavailableUntil = System.currentTimeMillis() + mongoRetryAfterMs;
+        log.warn("MongoDB read failed for {}, falling back to SOAP for {} ms: {}",
+                operation, mongoRetryAfterMs, e.getMessage());
     }
 
-    private FileInfoDto parseGetFileResponse(String xml) {
-        try {
-            Document doc = parseXml(xml);
-            Element fileElement = (Element) doc.getElementsByTagName("File").item(0);
-            
-            if (fileElement == null) {
-                return null;
-            }
-
-            return mapToFileInfoDto(fileElement);
-        } catch (Exception e) {
-            log.error("Error parsing GetFile response", e);
-            return null;
-        }
+    private void invalidate(String fileId) {
+        invalidations.incrementAndGet();
+        fileCache.invalidate(fileId);
+        downloadUrlCache.asMap().keySet().removeIf(key -> key.fileId().equals(fileId));
     }
 
-    private List<FileInfoDto> parseGetUserFilesResponse(String xml) {
-        List<FileInfoDto> files = new ArrayList<>();
-        
-        try {
-            Document doc = parseXml(xml);
-            
-            // Intentar diferentes nombres de elementos
-            NodeList fileNodes = doc.getElementsByTagNameNS("http://fileshare.com/soap/files", "FileInfo");
-            log.debug("Found {} FileInfo nodes with namespace", fileNodes.getLength());
-            
-            if (fileNodes.getLength() == 0) {
-                fileNodes = doc.getElementsByTagName("FileInfo");
-                log.debug("Found {} FileInfo nodes without namespace", fileNodes.getLength());
-            }
-            
-            if (fileNodes.getLength() == 0) {
-                fileNodes = doc.getElementsByTagName("a:FileInfo");
-                log.debug("Found {} a:FileInfo nodes", fileNodes.getLength());
-            }
-            
-            for (int i = 0; i < fileNodes.getLength(); i++) {
-                Element fileElement = (Element) fileNodes.item(i);
-                files.add(mapToFileInfoDto(fileElement));
-            }
-            
-            log.debug("Parsed {} files from SOAP response", files.size());
-        } catch (Exception e) {
-            log.error("Error parsing GetUserFiles response", e);
+    /**
+     * soap-service devuelve ExpiresAt en UTC. Se toma el menor entre ese valor y el
+     * calculado localmente, por si la respuesta no lo trae o hay desfase de reloj.
+     */
+    private Instant expiresAt(DownloadUrlDto downloadUrl, Instant requestedExpiry) {
+        if (downloadUrl.getExpiresAt() == null) {
+            return requestedExpiry;
         }
-        
-        return files;
+        Instant reported = downloadUrl.getExpiresAt().toInstant(ZoneOffset.UTC);
+        return reported.isBefore(requestedExpiry) ? reported : requestedExpiry;
     }
 
-    private DownloadUrlDto parseGetDownloadUrlResponse(String xml) {
-        try {
-            Document doc = parseXml(xml);
-            
-            String downloadUrl = getElementText(doc.getDocumentElement(), "DownloadUrl");
-            String expiresAt = getElementText(doc.getDocumentElement(), "ExpiresAt");
-
-            return DownloadUrlDto.builder()
-                    .downloadUrl(downloadUrl)
-                    .expiresAt(parseDateTime(expiresAt))
-                    .build();
-        } catch (Exception e) {
-            log.error("Error parsing GetDownloadUrl response", e);
-            return null;
-        }
+    /** No se cachean los "no encontrado" ni las respuestas de los fallbacks (placeholder o stale). */
+    private boolean isCacheable(FileInfoDto file) {
+        return file != null && !file.isStale() && !"ERROR".equals(file.getStatus());
     }
 
-    private boolean parseDeleteFileResponse(String xml) {
-        try {
-            Document doc = parseXml(xml);
-            String success = getElementText(doc.getDocumentElement(), "Success");
-            return "true".equalsIgnoreCase(success);
-        } catch (Exception e) {
-            log.error("Error parsing DeleteFile response", e);
-            return false;
-        }
+    private record DownloadUrlKey(String fileId, long expiryBucket) {
     }
 
-    private FileInfoDto mapToFileInfoDto(Element element) {
-        return FileInfoDto.builder()
-                .fileId(getElementText(element, "FileId"))
-                .userId(getElementText(element, "UserId"))
-                .fileName(getElementText(element, "FileName"))
-                .contentType(getElementText(element, "ContentType"))
-                .fileSize(parseLong(getElementText(element, "FileSize")))
-                .hash(getElementText(element, "Hash"))
-                .isEncrypted(parseBoolean(getElementText(element, "IsEncrypted")))
-                .description(getElementText(element, "Description"))
-                .status(getElementText(element, "Status"))
-                .createdAt(parseDateTime(getElementText(element, "CreatedAt")))
-                .processedAt(parseDateTime(getElementText(element, "ProcessedAt")))
-                .build();
+    private record CachedDownloadUrl(DownloadUrlDto url, Instant expiresAt) {
     }
 
-    private Document parseXml(String xml) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        return builder.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
-    }
+    /** Cada URL caduca en la caché safety-margin antes que en MinIO. */
+    private record DownloadUrlExpiry(Duration safetyMargin) implements Expiry<DownloadUrlKey, CachedDownloadUrl> {
 
-    private String getElementText(Element parent, String tagName) {
-        NodeList nodes = parent.getElementsByTagName(tagName);
-        if (nodes.getLength() > 0) {
-            return nodes.item(0).getTextContent();
+        @Override
+        public long expireAfterCreate(DownloadUrlKey key, CachedDownloadUrl value, long currentTime) {
+            Duration remaining = Duration.between(Instant.now(), value.expiresAt()).minus(safetyMargin);
+            return remaining.isNegative() ? 0 : remaining.toNanos();
         }
-        return null;
-    }
 
-    private Long parseLong(String value) {
-        try {
-            return value != null ? Long.parseLong(value) : null;
-        } catch (NumberFormatException e) {
-            return null;
+        @Override
+        public long expireAfterUpdate(DownloadUrlKey key, CachedDownloadUrl value, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
         }
-    }
 
-    private Boolean parseBoolean(String value) {
-        return value != null ? Boolean.parseBoolean(value) : null;
-    }
-
-    private LocalDateTime parseDateTime(String value) {
-        if (value == null || value.isEmpty()) {
-            return null;
-        }
-        try {
-            return LocalDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME);
-        } catch (Exception e) {
-            return null;
+        @Override
+        public long expireAfterRead(DownloadUrlKey key, CachedDownloadUrl value, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
         }
     }
 }
@@ -0,0 +1,62 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.soap.LastKnownGoodStore;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Cuando el circuit breaker de soap-service pasa a HALF_OPEN, vuelve a pedir en segundo
+ * plano unas pocas de las entradas que se sirvieron stale. Son como mucho refresh-limit
+ * llamadas, para no cargar al servicio mientras se recupera; además sirven de prueba
+ * para cerrar el circuito. Van siempre por SOAP, también con visualizer.read-mode=mongo.
+ */
+@Slf4j
+@Service
+public class StaleEntryRefresher {
+
+    private static final String SOAP_SERVICE = "soapService";
+
+    private final SoapClientService soapClientService;
+    private final LastKnownGoodStore lastKnownGood;
+    private final int refreshLimit;
+
+    public StaleEntryRefresher(SoapClientService soapClientService,
+                               LastKnownGoodStore lastKnownGood,
+                               CircuitBreakerRegistry circuitBreakerRegistry,
+                               @Value("${visualizer.cache.last-known-good.refresh-limit:3}") int refreshLimit) {
+        this.soapClientService = soapClientService;
+        this.lastKnownGood = lastKnownGood;
+        this.refreshLimit = refreshLimit;
+        circuitBreakerRegistry.circuitBreaker(SOAP_SERVICE).getEventPublisher()
+                .onStateTransition(this::onStateTransition);
+    }
+
+    private void onStateTransition(CircuitBreakerOnStateTransitionEvent event) {
+        if (event.getStateTransition().getToState() != CircuitBreaker.State.HALF_OPEN) {
+            return;
+        }
+        List<String> fileIds = lastKnownGood.takeStaleFileIds(refreshLimit);
+        List<String> userIds = lastKnownGood.takeStaleUserIds(refreshLimit - fileIds.size());
+        if (fileIds.isEmpty() && userIds.isEmpty()) {
+            return;
+        }
+        log.info("Circuit half-open, refreshing {} stale files and {} stale user lists",
+                fileIds.size(), userIds.size());
+        Thread.ofVirtual().name("stale-refresh").start(() -> refresh(fileIds, userIds));
+    }
+
+    private void refresh(List<String> fileIds, List<String> userIds) {
+        try {
+            fileIds.forEach(soapClientService::getFileFromSoap);
+            userIds.forEach(soapClientService::getUserFilesFromSoap);
+        } catch (RuntimeException e) {
+            log.warn("Stale entry refresh failed: {}", e.getMessage());
+        }
+    }
+}
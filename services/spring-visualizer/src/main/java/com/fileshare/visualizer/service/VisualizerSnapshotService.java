@@ -0,0 +1,165 @@
+package com.fileshare.visualizer.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guarda periódicamente en disco la vista de la lista ({@link FileListView}) y los
+ * agregados ({@link FileStatisticsService}) para arrancar en caliente: al iniciar se
+ * restauran antes de que ninguno de los dos vaya a MongoDB, y la vista se pone al día
+ * leyendo solo los cambios posteriores al resume token guardado.
+ * <p>
+ * Se escribe cada interval y al parar la aplicación, así un despliegue progresivo
+ * arranca con el estado de la instancia que sustituye. Un snapshot más antiguo que
+ * max-age se ignora.
+ */
+@Slf4j
+@Service
+public class VisualizerSnapshotService {
+
+    private static final int STATS_ATTEMPTS = 10;
+    private static final long STATS_RETRY_MS = 10;
+
+    private final FileListView fileListView;
+    private final FileStatisticsService fileStatisticsService;
+    private final boolean enabled;
+    private final Path path;
+    private final Duration interval;
+    private final Duration maxAge;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("visualizer-snapshot").daemon(true).factory());
+
+    public VisualizerSnapshotService(FileListView fileListView,
+                                     FileStatisticsService fileStatisticsService,
+                                     @Value("${visualizer.snapshot.enabled:true}") boolean enabled,
+                                     @Value("${visualizer.snapshot.path:${java.io.tmpdir}/spring-visualizer.snapshot}") Path path,
+                                     @Value("${visualizer.snapshot.interval:5m}") Duration interval,
+                                     @Value("${visualizer.snapshot.max-age:24h}") Duration maxAge) {
+        this.fileListView = fileListView;
+        this.fileStatisticsService = fileStatisticsService;
+        this.enabled = enabled;
+        this.path = path;
+        this.interval = interval;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Se ejecuta antes que los listeners de arranque de la vista y de las estadísticas,
+     * que así encuentran el estado restaurado.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        restore();
+        scheduler.scheduleWithFixedDelay(this::write, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        scheduler.shutdownNow();
+        write();
+    }
+
+    private void restore() {
+        long start = System.nanoTime();
+        SnapshotFile.Contents contents;
+        try {
+            contents = SnapshotFile.read(path);
+        } catch (NoSuchFileException e) {
+            log.info("No visualizer snapshot at {}, starting cold", path);
+            return;
+        } catch (IOException e) {
+            log.warn("Ignoring visualizer snapshot at {}: {}", path, e.getMessage());
+            return;
+        }
+
+        if (contents.writtenAt() == null || contents.writtenAt().plus(maxAge).isBefore(LocalDateTime.now())) {
+            log.info("Ignoring visualizer snapshot written at {}, older than {}", contents.writtenAt(), maxAge);
+            return;
+        }
+        try {
+            // Sin la vista restaurada nadie reproduce los cambios para las estadísticas
+            boolean viewRestored = contents.view() != null && fileListView.restore(contents.view());
+            if (contents.stats() != null) {
+                fileStatisticsService.restore(contents.stats(),
+                        viewRestored ? contents.view().resumeToken() : null);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not restore visualizer snapshot: {}", e.getMessage());
+            return;
+        }
+        log.info("Restored visualizer snapshot written at {}: {} files in {} ms", contents.writtenAt(),
+                contents.view() != null ? contents.view().rows() : 0,
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    /**
+     * Agregados cuya posición no va por detrás de la vista, para que al restaurar la
+     * reproducción de la vista los complete. Las estadísticas reciben cada cambio justo
+     * después que la vista, así que como mucho hay que esperar a que apliquen uno.
+     */
+    private FileStatisticsService.Snapshot statsAtOrAfter(String viewResumeToken) {
+        String viewPosition = FileStatisticsService.position(viewResumeToken);
+        for (int attempt = 0; attempt < STATS_ATTEMPTS; attempt++) {
+            FileStatisticsService.Snapshot stats = fileStatisticsService.snapshot().orElse(null);
+            if (stats == null) {
+                return null;
+            }
+            if (viewPosition == null || stats.position() != null && stats.position().compareTo(viewPosition) >= 0) {
+                return stats;
+            }
+            try {
+                Thread.sleep(STATS_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void write() {
+        long start = System.nanoTime();
+        FileListView.Snapshot view = fileListView.snapshot().orElse(null);
+        SnapshotFile.Contents contents = new SnapshotFile.Contents(LocalDateTime.now(), view,
+                view != null ? statsAtOrAfter(view.resumeToken()) : null);
+        // Sin la vista lista no se sobrescribe un snapshot anterior que aún puede servir
+        if (contents.view() == null) {
+            log.debug("File list view not ready, skipping visualizer snapshot");
+            return;
+        }
+        if (contents.stats() == null) {
+            log.debug("File statistics not in step with the file list view, snapshot without statistics");
+        }
+        try {
+            SnapshotFile.write(path, contents);
+            log.info("Wrote visualizer snapshot to {}: {} files, {} KB in {} ms", path, contents.view().rows(),
+                    Files.size(path) / 1024, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write visualizer snapshot to {}: {}", path, e.getMessage());
+        }
+    }
+}
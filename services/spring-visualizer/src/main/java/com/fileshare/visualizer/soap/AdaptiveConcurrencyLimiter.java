@@ -0,0 +1,212 @@
+package com.fileshare.visualizer.soap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Límite adaptativo (AIMD) de llamadas simultáneas a soap-service. El límite sube en 1 cada
+ * vez que se completa una ventana de tantas llamadas buenas (por debajo de slow-call-threshold)
+ * como el propio límite, si en esa ventana se llegó a usar al menos la mitad. Un timeout, un
+ * fallo de conexión, un 5xx o una llamada lenta lo multiplican por backoff-ratio.
+ * <p>
+ * Los errores que no indican sobrecarga (un SOAP fault que se parsea, un not-found, un 4xx)
+ * liberan el hueco sin tocar el límite.
+ * <p>
+ * Con el límite alcanzado se espera como mucho queue-timeout en una cola corta y después
+ * se rechaza con {@link SoapOverloadedException}, sin llegar a enviar la petición.
+ * <p>
+ * Una llamada cuyo hilo se interrumpe (el intento perdedor de un hedge, un lote que vence)
+ * libera su hueco sin tocar el límite.
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long slowCallThresholdNanos;
+    private final int maxQueue;
+    private final long queueTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private volatile double limit;
+    private volatile int inFlight;
+    private volatile int queued;
+    private int windowSuccesses;
+    private int windowPeakInFlight;
+
+    private final Counter rejections;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${soap.client.limiter.enabled:true}") boolean enabled,
+                                      @Value("${soap.client.limiter.initial-limit:20}") int initialLimit,
+                                      @Value("${soap.client.limiter.min-limit:4}") int minLimit,
+                                      @Value("${soap.client.limiter.max-limit:50}") int maxLimit,
+                                      @Value("${soap.client.limiter.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${soap.client.limiter.slow-call-threshold-ms:2000}") long slowCallThresholdMs,
+                                      @Value("${soap.client.limiter.max-queue:50}") int maxQueue,
+                                      @Value("${soap.client.limiter.queue-timeout-ms:100}") long queueTimeoutMs) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowCallThresholdMs);
+        this.maxQueue = maxQueue;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+
+        Gauge.builder("visualizer.soap.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit towards soap-service").register(meterRegistry);
+        Gauge.builder("visualizer.soap.limiter.in-flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("SOAP calls currently in flight").register(meterRegistry);
+        Gauge.builder("visualizer.soap.limiter.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+                .description("Calls waiting for a slot").register(meterRegistry);
+        this.rejections = Counter.builder("visualizer.soap.limiter.rejections")
+                .description("Calls rejected because the limit was reached").register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta la llamada si hay hueco bajo el límite y ajusta el límite con su resultado.
+     *
+     * @throws SoapOverloadedException si no se obtiene hueco dentro de queue-timeout
+     */
+    public <T> T execute(String operation, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        acquire(operation);
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.FAILED;
+        try {
+            T result = call.get();
+            outcome = Outcome.SUCCEEDED;
+            return result;
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // La interrupción cierra el socket: el error no viene de soap-service
+                throw new SoapCallCancelledException("SOAP " + operation + " call cancelled", e);
+            }
+            if (isOverload(e)) {
+                outcome = Outcome.DROPPED;
+            }
+            throw e;
+        } finally {
+            // Un intento cancelado (el perdedor de un hedge) no dice nada de soap-service
+            release(System.nanoTime() - start,
+                    Thread.currentThread().isInterrupted() ? Outcome.CANCELLED : outcome);
+        }
+    }
+
+    /**
+     * RestTemplate envuelve cualquier error de E/S (timeouts de conexión o de lectura, conexión
+     * rechazada o cortada) en ResourceAccessException.
+     */
+    private static boolean isOverload(RuntimeException e) {
+        return e instanceof ResourceAccessException || e instanceof HttpServerErrorException;
+    }
+
+    private void acquire(String operation) {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                windowPeakInFlight = Math.max(windowPeakInFlight, inFlight);
+                return;
+            }
+            if (queued >= maxQueue) {
+                throw reject(operation);
+            }
+            queued++;
+            try {
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        throw reject(operation);
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(operation);
+            } finally {
+                queued--;
+            }
+            inFlight++;
+            windowPeakInFlight = Math.max(windowPeakInFlight, inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long latencyNanos, Outcome outcome) {
+        lock.lock();
+        try {
+            inFlight--;
+            boolean dropped = outcome == Outcome.DROPPED;
+            if (outcome == Outcome.CANCELLED) {
+                log.debug("Cancelled SOAP call released its slot");
+            } else if (dropped || latencyNanos > slowCallThresholdNanos) {
+                double reduced = Math.max(minLimit, limit * backoffRatio);
+                if ((int) reduced < (int) limit) {
+                    log.debug("Reducing SOAP concurrency limit to {} ({})", (int) reduced,
+                            dropped ? "error" : "slow call");
+                }
+                limit = reduced;
+                resetWindow();
+            } else if (outcome == Outcome.SUCCEEDED && ++windowSuccesses >= (int) limit) {
+                // Aumento aditivo: como mucho +1 por ventana de llamadas buenas
+                if (windowPeakInFlight * 2 >= limit) {
+                    limit = Math.min(maxLimit, limit + 1);
+                }
+                resetWindow();
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void resetWindow() {
+        windowSuccesses = 0;
+        windowPeakInFlight = inFlight;
+    }
+
+    private SoapOverloadedException reject(String operation) {
+        rejections.increment();
+        return new SoapOverloadedException("Concurrency limit of " + (int) limit
+                + " reached towards soap-service, rejecting " + operation);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    private enum Outcome {
+        SUCCEEDED,
+        FAILED, // error que no indica sobrecarga
+        DROPPED,
+        CANCELLED
+    }
+}
@@ -0,0 +1,102 @@
+package com.fileshare.visualizer.soap;
+
+import com.fileshare.visualizer.dto.FileInfoDto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+
+/**
+ * Convierte en una sola pasada los eventos XML (inicio, texto, fin) de un elemento
+ * FileInfo/File del contrato SOAP en un {@link FileInfoDto}. Los elementos se identifican
+ * por nombre local, así que el prefijo de namespace que use soap-service no importa.
+ * <p>
+ * Mantiene estado por documento: se crea una instancia por respuesta y no es thread-safe.
+ */
+public class FileInfoXmlMapper {
+
+    private final Set<String> rootElements;
+
+    private FileInfoDto.FileInfoDtoBuilder current;
+    private String field;
+    private boolean nil;
+    private final StringBuilder text = new StringBuilder();
+
+    public FileInfoXmlMapper(Set<String> rootElements) {
+        this.rootElements = rootElements;
+    }
+
+    public void startElement(String localName, boolean isNil) {
+        if (current == null) {
+            if (rootElements.contains(localName)) {
+                current = FileInfoDto.builder();
+            }
+            return;
+        }
+        field = localName;
+        nil = isNil;
+        text.setLength(0);
+    }
+
+    public void characters(String chars) {
+        if (field != null) {
+            text.append(chars);
+        }
+    }
+
+    /**
+     * @return el DTO completo al cerrar el elemento raíz; null en cualquier otro caso
+     */
+    public FileInfoDto endElement(String localName) {
+        if (current == null) {
+            return null;
+        }
+        if (localName.equals(field)) {
+            set(field, nil ? null : text.toString());
+            field = null;
+            return null;
+        }
+        if (rootElements.contains(localName)) {
+            FileInfoDto dto = current.build();
+            current = null;
+            return dto;
+        }
+        return null;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "FileId" -> current.fileId(value);
+            case "UserId" -> current.userId(value);
+            case "FileName" -> current.fileName(value);
+            case "ContentType" -> current.contentType(value);
+            case "FileSize" -> current.fileSize(parseLong(value));
+            case "Hash" -> current.hash(value);
+            case "IsEncrypted" -> current.isEncrypted(value != null ? Boolean.parseBoolean(value) : null);
+            case "Description" -> current.description(value);
+            case "Status" -> current.status(value);
+            case "CreatedAt" -> current.createdAt(parseDateTime(value));
+            case "ProcessedAt" -> current.processedAt(parseDateTime(value));
+            default -> { }
+        }
+    }
+
+    static Long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static LocalDateTime parseDateTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
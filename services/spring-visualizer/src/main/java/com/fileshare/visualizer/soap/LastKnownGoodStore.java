@@ -0,0 +1,128 @@
+package com.fileshare.visualizer.soap;
+
+import com.fileshare.visualizer.dto.FileInfoDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.SequencedSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Últimos resultados correctos de soap-service, para que los fallbacks del circuit
+ * breaker devuelvan datos reales marcados como stale en lugar de un placeholder.
+ * Guarda también qué claves se han servido stale, para refrescarlas al recuperarse el servicio.
+ */
+@Component
+public class LastKnownGoodStore {
+
+    private final Cache<String, FileInfoDto> files;
+    private final Cache<String, List<FileInfoDto>> userFiles;
+    private final int maxPendingRefresh;
+
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    private final SequencedSet<String> staleFileIds = new LinkedHashSet<>();
+    private final SequencedSet<String> staleUserIds = new LinkedHashSet<>();
+
+    public LastKnownGoodStore(MeterRegistry meterRegistry,
+                              @Value("${visualizer.cache.last-known-good.max-size:10000}") long maxSize,
+                              @Value("${visualizer.cache.last-known-good.ttl:24h}") Duration ttl,
+                              @Value("${visualizer.cache.last-known-good.max-pending-refresh:100}") int maxPendingRefresh) {
+        this.files = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+        this.userFiles = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+        this.maxPendingRefresh = maxPendingRefresh;
+        CaffeineCacheMetrics.monitor(meterRegistry, files, "soap.last-known-good.files");
+        CaffeineCacheMetrics.monitor(meterRegistry, userFiles, "soap.last-known-good.user-files");
+    }
+
+    public void putFile(FileInfoDto file) {
+        if (file != null && file.getFileId() != null && !file.isStale() && !"ERROR".equals(file.getStatus())) {
+            files.put(file.getFileId(), file);
+        }
+    }
+
+    public void putUserFiles(String userId, List<FileInfoDto> list) {
+        userFiles.put(userId, List.copyOf(list));
+        list.forEach(this::putFile);
+    }
+
+    public Optional<FileInfoDto> staleFile(String fileId) {
+        FileInfoDto file = files.getIfPresent(fileId);
+        if (file == null) {
+            return Optional.empty();
+        }
+        markPending(staleFileIds, fileId);
+        return Optional.of(file.toBuilder().stale(true).build());
+    }
+
+    public Optional<List<FileInfoDto>> staleUserFiles(String userId) {
+        List<FileInfoDto> list = userFiles.getIfPresent(userId);
+        if (list == null) {
+            return Optional.empty();
+        }
+        markPending(staleUserIds, userId);
+        List<FileInfoDto> stale = new ArrayList<>(list.size());
+        list.forEach(file -> stale.add(file.toBuilder().stale(true).build()));
+        return Optional.of(stale);
+    }
+
+    /**
+     * Quita el archivo y, si se conoce, la lista de su usuario: un archivo borrado
+     * no debe reaparecer en un fallback.
+     */
+    public void remove(String fileId, String userId) {
+        files.invalidate(fileId);
+        if (userId != null) {
+            userFiles.invalidate(userId);
+        }
+    }
+
+    public void clear() {
+        files.invalidateAll();
+        userFiles.invalidateAll();
+    }
+
+    /** Saca hasta {@code max} fileIds servidos stale, los más recientes primero. */
+    public List<String> takeStaleFileIds(int max) {
+        return take(staleFileIds, max);
+    }
+
+    /** Saca hasta {@code max} userIds servidos stale, los más recientes primero. */
+    public List<String> takeStaleUserIds(int max) {
+        return take(staleUserIds, max);
+    }
+
+    private void markPending(SequencedSet<String> pending, String key) {
+        pendingLock.lock();
+        try {
+            pending.remove(key);
+            pending.addLast(key);
+            if (pending.size() > maxPendingRefresh) {
+                pending.removeFirst();
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    private List<String> take(SequencedSet<String> pending, int max) {
+        pendingLock.lock();
+        try {
+            List<String> keys = new ArrayList<>(Math.min(max, pending.size()));
+            while (keys.size() < max && !pending.isEmpty()) {
+                keys.add(pending.removeLast());
+            }
+            return keys;
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.fileshare.visualizer.soap;
+
+import com.fileshare.visualizer.dto.DownloadUrlDto;
+import com.fileshare.visualizer.dto.FileInfoDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.codec.xml.XmlEventDecoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variante no bloqueante de {@link SoapResponseParser}. Con aalto-xml en el classpath,
+ * {@link XmlEventDecoder} emite eventos a medida que llegan los fragmentos del body,
+ * así que cada FileInfo se publica en cuanto se cierra, sin esperar a la respuesta completa.
+ * <p>
+ * El límite de memoria del decoder (max-in-memory-size) cuenta los bytes de todo el
+ * elemento de primer nivel, que en un sobre SOAP es el Body: con el valor por defecto de
+ * 256 KB fallaría cualquier lista de archivos grande aunque no se retenga en memoria.
+ */
+@Component
+public class ReactiveSoapResponseParser {
+
+    private static final Set<String> FILE_ELEMENT = Set.of("File");
+    private static final Set<String> FILE_INFO_ELEMENT = Set.of("FileInfo");
+    private static final QName NIL = new QName(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil");
+    private static final ResolvableType XML_EVENT_TYPE = ResolvableType.forClass(XMLEvent.class);
+
+    private final XmlEventDecoder decoder = new XmlEventDecoder();
+
+    public ReactiveSoapResponseParser(@Value("${soap.client.reactive.max-in-memory-size:-1}") int maxInMemorySize) {
+        decoder.setMaxInMemorySize(maxInMemorySize);
+    }
+
+    public Mono<FileInfoDto> parseFile(Flux<DataBuffer> body) {
+        return parseFileInfos(body, FILE_ELEMENT).next();
+    }
+
+    public Flux<FileInfoDto> parseFiles(Flux<DataBuffer> body) {
+        return parseFileInfos(body, FILE_INFO_ELEMENT);
+    }
+
+    public Mono<DownloadUrlDto> parseDownloadUrl(Flux<DataBuffer> body) {
+        return readValues(body, Set.of("DownloadUrl", "ExpiresAt"))
+                .map(values -> DownloadUrlDto.builder()
+                        .downloadUrl(values.get("DownloadUrl"))
+                        .expiresAt(FileInfoXmlMapper.parseDateTime(values.get("ExpiresAt")))
+                        .build());
+    }
+
+    public Mono<Boolean> parseSuccess(Flux<DataBuffer> body) {
+        return readValues(body, Set.of("Success"))
+                .map(values -> "true".equalsIgnoreCase(values.get("Success")));
+    }
+
+    private Flux<FileInfoDto> parseFileInfos(Flux<DataBuffer> body, Set<String> rootElements) {
+        return Flux.defer(() -> {
+            FileInfoXmlMapper mapper = new FileInfoXmlMapper(rootElements);
+            return events(body).handle((event, sink) -> {
+                if (event.isStartElement()) {
+                    StartElement start = event.asStartElement();
+                    mapper.startElement(start.getName().getLocalPart(), isNil(start));
+                } else if (event.isCharacters()) {
+                    mapper.characters(event.asCharacters().getData());
+                } else if (event.isEndElement()) {
+                    FileInfoDto dto = mapper.endElement(event.asEndElement().getName().getLocalPart());
+                    if (dto != null) {
+                        sink.next(dto);
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Texto del primer elemento con cada uno de los nombres locales indicados;
+     * los valores xsi:nil quedan como null.
+     */
+    private Mono<Map<String, String>> readValues(Flux<DataBuffer> body, Set<String> names) {
+        return Mono.defer(() -> {
+            ValueCollector collector = new ValueCollector(names);
+            return events(body)
+                    .doOnNext(collector::accept)
+                    .takeUntil(event -> collector.isComplete())
+                    .then(Mono.fromSupplier(() -> collector.values));
+        });
+    }
+
+    private Flux<XMLEvent> events(Flux<DataBuffer> body) {
+        return decoder.decode(body, XML_EVENT_TYPE, null, null);
+    }
+
+    private static boolean isNil(StartElement start) {
+        Attribute attribute = start.getAttributeByName(NIL);
+        return attribute != null && "true".equals(attribute.getValue());
+    }
+
+    private static final class ValueCollector {
+
+        private final Set<String> names;
+        private final Map<String, String> values = new HashMap<>();
+        private final StringBuilder text = new StringBuilder();
+        private String field;
+        private boolean nil;
+
+        private ValueCollector(Set<String> names) {
+            this.names = names;
+        }
+
+        private void accept(XMLEvent event) {
+            if (event.isStartElement()) {
+                String name = event.asStartElement().getName().getLocalPart();
+                if (names.contains(name) && !values.containsKey(name)) {
+                    field = name;
+                    nil = isNil(event.asStartElement());
+                    text.setLength(0);
+                }
+            } else if (field != null && event.isCharacters()) {
+                text.append(event.asCharacters().getData());
+            } else if (field != null && event.isEndElement()
+                    && field.equals(event.asEndElement().getName().getLocalPart())) {
+                values.put(field, nil ? null : text.toString());
+                field = null;
+            }
+        }
+
+        private boolean isComplete() {
+            return values.size() == names.size();
+        }
+    }
+}
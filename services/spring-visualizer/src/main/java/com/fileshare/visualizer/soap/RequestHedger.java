@@ -0,0 +1,245 @@
+package com.fileshare.visualizer.soap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Hedging de lecturas idempotentes a soap-service: si el primer intento no responde en
+ * el percentil configurado de las latencias recientes, se lanza un segundo intento y se
+ * usa la primera respuesta correcta. Solo para operaciones sin efectos; nunca para DeleteFile.
+ * <p>
+ * Un token bucket limita la carga extra: cada petición aporta budget-percent/100 tokens
+ * (hasta un máximo) y cada hedge consume uno, igual que cada reintento del retry
+ * soapService ({@link #chargeRetry}), que envuelve a este hedging en las lecturas.
+ */
+@Slf4j
+@Component
+public class RequestHedger {
+
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final double tokensPerRequest;
+    private final double maxTokens;
+    private final ExecutorService executor;
+
+    // Latencias recientes en un buffer circular; el retardo se recalcula cada RECOMPUTE_EVERY muestras
+    private final AtomicLongArray samples;
+    private final AtomicLong sampleCount = new AtomicLong();
+    private volatile long delayNanos;
+
+    private final ReentrantLock budgetLock = new ReentrantLock();
+    private double tokens;
+
+    private final Counter hedged;
+    private final Counter hedgeWins;
+    private final Counter budgetExhausted;
+
+    public RequestHedger(MeterRegistry meterRegistry,
+                         @Value("${soap.client.hedging.enabled:false}") boolean enabled,
+                         @Value("${soap.client.hedging.percentile:95}") double percentile,
+                         @Value("${soap.client.hedging.min-delay-ms:50}") long minDelayMs,
+                         @Value("${soap.client.hedging.max-delay-ms:2000}") long maxDelayMs,
+                         @Value("${soap.client.hedging.window:1024}") int window,
+                         @Value("${soap.client.hedging.budget-percent:10}") double budgetPercent,
+                         @Value("${soap.client.hedging.max-tokens:10}") double maxTokens) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.tokensPerRequest = budgetPercent / 100.0;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+        this.samples = new AtomicLongArray(window);
+        // Hasta tener muestras se usa el retardo máximo
+        this.delayNanos = maxDelayNanos;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("soap-hedge-", 0).factory());
+
+        this.hedged = Counter.builder("visualizer.soap.hedging.requests").tag("result", "sent")
+                .description("Hedge requests sent to soap-service").register(meterRegistry);
+        this.hedgeWins = Counter.builder("visualizer.soap.hedging.requests").tag("result", "won")
+                .description("Hedge requests that answered before the original").register(meterRegistry);
+        this.budgetExhausted = Counter.builder("visualizer.soap.hedging.requests").tag("result", "budget-exhausted")
+                .description("Hedges skipped because the budget was exhausted").register(meterRegistry);
+        Gauge.builder("visualizer.soap.hedging.delay", this, h -> h.delayNanos / 1_000_000.0)
+                .description("Current hedging delay in milliseconds").register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta la lectura con hedging si está habilitado. Solo falla si fallan todos
+     * los intentos lanzados, con la excepción del último en terminar. Al volver, el
+     * intento que sigue en curso se cancela interrumpiendo su hilo, lo que aborta la
+     * petición HTTP y libera su hueco en {@link AdaptiveConcurrencyLimiter}.
+     */
+    public <T> T execute(String operation, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        addTokens();
+
+        CompletableFuture<T> primaryResult = new CompletableFuture<>();
+        Future<?> primary = attempt(call, primaryResult);
+        Future<?> hedge = null;
+        try {
+            try {
+                return primaryResult.get(delayNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (!tryAcquireToken()) {
+                    budgetExhausted.increment();
+                    return await(primaryResult);
+                }
+            } catch (ExecutionException e) {
+                throw unwrap(e.getCause());
+            }
+
+            log.debug("Hedging {} after {} ms", operation, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+            hedged.increment();
+            CompletableFuture<T> hedgeResult = new CompletableFuture<>();
+            hedge = attempt(call, hedgeResult);
+
+            // Primera respuesta correcta; solo falla si fallan los dos intentos
+            CompletableFuture<T> first = new CompletableFuture<>();
+            primaryResult.whenComplete((result, error) -> {
+                if (error == null) {
+                    first.complete(result);
+                } else if (hedgeResult.isCompletedExceptionally()) {
+                    first.completeExceptionally(error);
+                }
+            });
+            hedgeResult.whenComplete((result, error) -> {
+                if (error == null) {
+                    if (first.complete(result)) {
+                        hedgeWins.increment();
+                    }
+                } else if (primaryResult.isCompletedExceptionally()) {
+                    first.completeExceptionally(error);
+                }
+            });
+            return await(first);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SoapCallCancelledException("Interrupted waiting for " + operation, e);
+        } finally {
+            // No hace nada sobre un intento ya terminado
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Cuenta un reintento contra el mismo presupuesto que los hedges. El saldo puede quedar
+     * negativo (hasta -max-tokens): mientras haya reintentos no se lanzan hedges.
+     */
+    public void chargeRetry() {
+        budgetLock.lock();
+        try {
+            tokens = Math.max(-maxTokens, tokens - 1);
+        } finally {
+            budgetLock.unlock();
+        }
+    }
+
+    private <T> Future<?> attempt(Supplier<T> call, CompletableFuture<T> result) {
+        return executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                T value = call.get();
+                record(System.nanoTime() - start);
+                result.complete(value);
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private RuntimeException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (error instanceof Error fatal) {
+            throw fatal;
+        }
+        return new IllegalStateException(error);
+    }
+
+    private void record(long latencyNanos) {
+        long n = sampleCount.getAndIncrement();
+        samples.set((int) (n % samples.length()), latencyNanos);
+        if ((n + 1) % RECOMPUTE_EVERY == 0) {
+            recomputeDelay((int) Math.min(n + 1, samples.length()));
+        }
+    }
+
+    private void recomputeDelay(int size) {
+        long[] copy = new long[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        long value = copy[Math.max(0, Math.min(size - 1, index))];
+        delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, value));
+    }
+
+    private void addTokens() {
+        budgetLock.lock();
+        try {
+            tokens = Math.min(maxTokens, tokens + tokensPerRequest);
+        } finally {
+            budgetLock.unlock();
+        }
+    }
+
+    private boolean tryAcquireToken() {
+        budgetLock.lock();
+        try {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        } finally {
+            budgetLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
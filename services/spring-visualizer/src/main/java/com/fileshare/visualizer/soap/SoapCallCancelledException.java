@@ -0,0 +1,13 @@
+package com.fileshare.visualizer.soap;
+
+/**
+ * Llamada a soap-service abandonada porque su hilo se interrumpió (un lote que vence, el
+ * intento perdedor de un hedge). No se reintenta ni cuenta como fallo en el circuit
+ * breaker: no dice nada del estado del servicio.
+ */
+public class SoapCallCancelledException extends RuntimeException {
+
+    public SoapCallCancelledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,119 @@
+package com.fileshare.visualizer.soap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Plantilla de petición SOAP para una operación de soap-service. Los fragmentos fijos
+ * del sobre se codifican a bytes una sola vez; en cada llamada solo se escriben los
+ * parámetros, escapados para XML, directamente sobre el body de la petición HTTP.
+ */
+public final class SoapEnvelope {
+
+    public static final SoapEnvelope GET_FILE = new SoapEnvelope("GetFile", "FileId");
+    public static final SoapEnvelope GET_USER_FILES = new SoapEnvelope("GetUserFiles", "UserId");
+    public static final SoapEnvelope GET_DOWNLOAD_URL = new SoapEnvelope("GetDownloadUrl", "FileId", "ExpiryInSeconds");
+    public static final SoapEnvelope DELETE_FILE = new SoapEnvelope("DeleteFile", "FileId", "UserId");
+
+    private static final String ENVELOPE_START = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+            + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\""
+            + " xmlns:files=\"http://fileshare.com/soap/files\">"
+            + "<soap:Body>";
+    private static final String ENVELOPE_END = "</soap:Body></soap:Envelope>";
+
+    private final String operation;
+    private final int parameterCount;
+
+    /** segments[i] va antes del parámetro i; el último segmento cierra el sobre. */
+    private final byte[][] segments;
+
+    private SoapEnvelope(String operation, String... parameters) {
+        this.operation = operation;
+        this.parameterCount = parameters.length;
+        this.segments = new byte[parameters.length + 1][];
+
+        StringBuilder segment = new StringBuilder(ENVELOPE_START)
+                .append("<files:").append(operation).append("><files:request>");
+        for (int i = 0; i < parameters.length; i++) {
+            segment.append("<files:").append(parameters[i]).append('>');
+            segments[i] = bytes(segment);
+            segment.setLength(0);
+            segment.append("</files:").append(parameters[i]).append('>');
+        }
+        segment.append("</files:request></files:").append(operation).append('>').append(ENVELOPE_END);
+        segments[parameters.length] = bytes(segment);
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Escribe el sobre completo con los valores dados, en el orden de los parámetros.
+     */
+    public void writeTo(OutputStream out, String... values) throws IOException {
+        if (values.length != parameterCount) {
+            throw new IllegalArgumentException(operation + " expects " + parameterCount + " parameters");
+        }
+        for (int i = 0; i < parameterCount; i++) {
+            out.write(segments[i]);
+            writeEscaped(out, values[i]);
+        }
+        out.write(segments[parameterCount]);
+    }
+
+    /**
+     * Escapa y codifica en UTF-8 carácter a carácter, sin crear Strings intermedios.
+     * Los caracteres de control no permitidos en XML 1.0 se descartan.
+     */
+    static void writeEscaped(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> writeAscii(out, "&amp;");
+                case '<' -> writeAscii(out, "&lt;");
+                case '>' -> writeAscii(out, "&gt;");
+                case '"' -> writeAscii(out, "&quot;");
+                case '\'' -> writeAscii(out, "&apos;");
+                default -> {
+                    if (c < 0x20) {
+                        if (c == '\t' || c == '\n' || c == '\r') {
+                            out.write(c);
+                        }
+                    } else if (c < 0x80) {
+                        out.write(c);
+                    } else if (c < 0x800) {
+                        out.write(0xC0 | (c >> 6));
+                        out.write(0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        out.write(0xF0 | (codePoint >> 18));
+                        out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                        out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                        out.write(0x80 | (codePoint & 0x3F));
+                    } else if (!Character.isSurrogate(c) && c != 0xFFFE && c != 0xFFFF) {
+                        out.write(0xE0 | (c >> 12));
+                        out.write(0x80 | ((c >> 6) & 0x3F));
+                        out.write(0x80 | (c & 0x3F));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeAscii(OutputStream out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            out.write(text.charAt(i));
+        }
+    }
+
+    private static byte[] bytes(CharSequence text) {
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
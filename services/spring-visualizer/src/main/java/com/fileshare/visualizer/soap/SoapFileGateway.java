@@ -0,0 +1,199 @@
+package com.fileshare.visualizer.soap;
+
+import com.fileshare.visualizer.dto.DownloadUrlDto;
+import com.fileshare.visualizer.dto.FileInfoDto;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.retry.annotation.Retry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Llamadas SOAP a soap-service protegidas con circuit breaker y retry.
+ * Las usa {@link com.fileshare.visualizer.service.SoapClientService}, que añade
+ * la caché por delante para que los aciertos no pasen por el circuit breaker.
+ * <p>
+ * Las lecturas correctas se guardan en {@link LastKnownGoodStore}; los fallbacks de
+ * getFile y getUserFiles devuelven esos datos marcados como stale cuando existen. Una
+ * respuesta de lectura que no se puede parsear lanza {@link SoapResponseException} en
+ * lugar de tomarse como vacía, para no sobrescribir esos datos con una lista vacía.
+ */
+@Slf4j
+@Service
+public class SoapFileGateway {
+
+    private static final String SOAP_SERVICE = "soapService";
+
+    @Value("${soap.client.url}")
+    private String soapUrl;
+
+    private final RestTemplate restTemplate;
+    private final SoapResponseParser responseParser;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final RequestHedger requestHedger;
+    private final LastKnownGoodStore lastKnownGood;
+
+    public SoapFileGateway(RestTemplate soapRestTemplate, SoapResponseParser responseParser,
+                           AdaptiveConcurrencyLimiter concurrencyLimiter, RequestHedger requestHedger,
+                           LastKnownGoodStore lastKnownGood, RetryRegistry retryRegistry) {
+        this.restTemplate = soapRestTemplate;
+        this.responseParser = responseParser;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.requestHedger = requestHedger;
+        this.lastKnownGood = lastKnownGood;
+        // El retry envuelve al hedging: cada reintento gasta del mismo presupuesto que un hedge
+        retryRegistry.retry(SOAP_SERVICE).getEventPublisher().onRetry(event -> requestHedger.chargeRetry());
+    }
+
+    @CircuitBreaker(name = SOAP_SERVICE, fallbackMethod = "getFileFallback")
+    @Retry(name = SOAP_SERVICE)
+    public FileInfoDto getFile(String fileId) {
+        log.info("Getting file info via SOAP for fileId: {}", fileId);
+
+        FileInfoDto file = sendHedgedSoapRequest(SoapEnvelope.GET_FILE, this::parseGetFileResponse, fileId);
+        if (file != null) {
+            lastKnownGood.putFile(file);
+        } else {
+            lastKnownGood.remove(fileId, null);
+        }
+        return file;
+    }
+
+    public FileInfoDto getFileFallback(String fileId, Exception ex) {
+        log.error("Circuit breaker fallback for getFile. FileId: {}, Error: {}", fileId, ex.getMessage());
+        return lastKnownGood.staleFile(fileId).orElseGet(() -> FileInfoDto.builder()
+                .fileId(fileId)
+                .fileName("Service unavailable")
+                .status("ERROR")
+                .description("SOAP service is temporarily unavailable. Please try again later.")
+                .build());
+    }
+
+    @CircuitBreaker(name = SOAP_SERVICE, fallbackMethod = "getUserFilesFallback")
+    @Retry(name = SOAP_SERVICE)
+    public List<FileInfoDto> getUserFiles(String userId) {
+        log.info("Getting user files via SOAP for userId: {}", userId);
+
+        List<FileInfoDto> files = sendHedgedSoapRequest(SoapEnvelope.GET_USER_FILES,
+                this::parseGetUserFilesResponse, userId);
+        lastKnownGood.putUserFiles(userId, files);
+        return files;
+    }
+
+    public List<FileInfoDto> getUserFilesFallback(String userId, Exception ex) {
+        log.error("Circuit breaker fallback for getUserFiles. UserId: {}, Error: {}", userId, ex.getMessage());
+        return lastKnownGood.staleUserFiles(userId).orElse(Collections.emptyList());
+    }
+
+    @CircuitBreaker(name = SOAP_SERVICE, fallbackMethod = "getDownloadUrlFallback")
+    @Retry(name = SOAP_SERVICE)
+    public DownloadUrlDto getDownloadUrl(String fileId, int expiryInSeconds) {
+        log.info("Getting download URL via SOAP for fileId: {}", fileId);
+
+        return sendHedgedSoapRequest(SoapEnvelope.GET_DOWNLOAD_URL, this::parseGetDownloadUrlResponse,
+                fileId, Integer.toString(expiryInSeconds));
+    }
+
+    public DownloadUrlDto getDownloadUrlFallback(String fileId, int expiryInSeconds, Exception ex) {
+        log.error("Circuit breaker fallback for getDownloadUrl. FileId: {}, Error: {}", fileId, ex.getMessage());
+        return DownloadUrlDto.builder()
+                .downloadUrl(null)
+                .error("Service temporarily unavailable")
+                .build();
+    }
+
+    @CircuitBreaker(name = SOAP_SERVICE, fallbackMethod = "deleteFileFallback")
+    @Retry(name = SOAP_SERVICE)
+    public boolean deleteFile(String fileId, String userId) {
+        log.info("Deleting file via SOAP for fileId: {}, userId: {}", fileId, userId);
+
+        boolean deleted = sendSoapRequest(SoapEnvelope.DELETE_FILE, this::parseDeleteFileResponse, fileId, userId);
+        if (deleted) {
+            lastKnownGood.remove(fileId, userId);
+        }
+        return deleted;
+    }
+
+    public boolean deleteFileFallback(String fileId, String userId, Exception ex) {
+        log.error("Circuit breaker fallback for deleteFile. FileId: {}, UserId: {}, Error: {}", 
+                fileId, userId, ex.getMessage());
+        return false;
+    }
+
+    /**
+     * Solo para lecturas idempotentes: la misma petición puede llegar dos veces a soap-service.
+     */
+    private <T> T sendHedgedSoapRequest(SoapEnvelope envelope, SoapResponseHandler<T> responseHandler,
+                                        String... values) {
+        return requestHedger.execute(envelope.getOperation(),
+                () -> sendSoapRequest(envelope, responseHandler, values));
+    }
+
+    /**
+     * Escribe el sobre directamente en el body de la petición y parsea la respuesta
+     * desde el stream HTTP, sin pasar por Strings intermedios. Cada intento, incluidos
+     * los reintentos, ocupa un hueco del limitador de concurrencia.
+     */
+    private <T> T sendSoapRequest(SoapEnvelope envelope, SoapResponseHandler<T> responseHandler, String... values) {
+        return concurrencyLimiter.execute(envelope.getOperation(), () -> restTemplate.execute(
+                soapUrl,
+                HttpMethod.POST,
+                request -> {
+                    request.getHeaders().setContentType(MediaType.TEXT_XML);
+                    request.getHeaders().set("SOAPAction", "");
+                    envelope.writeTo(request.getBody(), values);
+                },
+                response -> responseHandler.handle(response.getBody())
+        ));
+    }
+
+    @FunctionalInterface
+    private interface SoapResponseHandler<T> {
+        T handle(InputStream body) throws IOException;
+    }
+
+    private FileInfoDto parseGetFileResponse(InputStream body) {
+        try {
+            return responseParser.parseFile(body);
+        } catch (XMLStreamException e) {
+            throw new SoapResponseException("Malformed GetFile response", e);
+        }
+    }
+
+    private List<FileInfoDto> parseGetUserFilesResponse(InputStream body) {
+        try {
+            List<FileInfoDto> files = responseParser.parseFiles(body);
+            log.debug("Parsed {} files from SOAP response", files.size());
+            return files;
+        } catch (XMLStreamException e) {
+            throw new SoapResponseException("Malformed GetUserFiles response", e);
+        }
+    }
+
+    private DownloadUrlDto parseGetDownloadUrlResponse(InputStream body) {
+        try {
+            return responseParser.parseDownloadUrl(body);
+        } catch (XMLStreamException e) {
+            throw new SoapResponseException("Malformed GetDownloadUrl response", e);
+        }
+    }
+
+    private boolean parseDeleteFileResponse(InputStream body) {
+        try {
+            return responseParser.parseSuccess(body);
+        } catch (XMLStreamException e) {
+            log.error("Error parsing DeleteFile response", e);
+            return false;
+        }
+    }
+}
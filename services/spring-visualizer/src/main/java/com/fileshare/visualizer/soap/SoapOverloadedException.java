@@ -0,0 +1,12 @@
+package com.fileshare.visualizer.soap;
+
+/**
+ * Llamada a soap-service rechazada localmente por {@link AdaptiveConcurrencyLimiter}.
+ * No se reintenta ni cuenta como fallo en el circuit breaker: el servicio no llegó a recibirla.
+ */
+public class SoapOverloadedException extends RuntimeException {
+
+    public SoapOverloadedException(String message) {
+        super(message);
+    }
+}
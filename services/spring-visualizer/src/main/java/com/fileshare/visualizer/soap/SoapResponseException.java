@@ -0,0 +1,12 @@
+package com.fileshare.visualizer.soap;
+
+/**
+ * Respuesta de soap-service que no se pudo parsear. Cuenta como fallo en el circuit
+ * breaker, cuyo fallback sirve los últimos datos correctos; no se reintenta.
+ */
+public class SoapResponseException extends RuntimeException {
+
+    public SoapResponseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
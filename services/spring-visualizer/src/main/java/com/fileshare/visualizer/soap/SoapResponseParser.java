@@ -0,0 +1,115 @@
+package com.fileshare.visualizer.soap;
+
+import com.fileshare.visualizer.dto.DownloadUrlDto;
+import com.fileshare.visualizer.dto.FileInfoDto;
+import org.springframework.stereotype.Component;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parser StAX de las respuestas de soap-service. Lee directamente del stream de la
+ * respuesta HTTP y mapea cada elemento en una sola pasada, sin construir un DOM.
+ * <p>
+ * El {@link XMLInputFactory} se configura una vez; crear readers a partir de él es thread-safe.
+ */
+@Component
+public class SoapResponseParser {
+
+    private static final Set<String> FILE_ELEMENT = Set.of("File");
+    private static final Set<String> FILE_INFO_ELEMENT = Set.of("FileInfo");
+
+    private final XMLInputFactory inputFactory;
+
+    public SoapResponseParser() {
+        // Implementación del JDK: aalto-xml también está en el classpath para el parser reactivo
+        inputFactory = XMLInputFactory.newDefaultFactory();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        // Sin DTD ni entidades externas (XXE)
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public FileInfoDto parseFile(InputStream body) throws XMLStreamException {
+        List<FileInfoDto> files = parseFileInfos(body, FILE_ELEMENT, 1);
+        return files.isEmpty() ? null : files.get(0);
+    }
+
+    public List<FileInfoDto> parseFiles(InputStream body) throws XMLStreamException {
+        return parseFileInfos(body, FILE_INFO_ELEMENT, Integer.MAX_VALUE);
+    }
+
+    public DownloadUrlDto parseDownloadUrl(InputStream body) throws XMLStreamException {
+        Map<String, String> values = readValues(body, Set.of("DownloadUrl", "ExpiresAt"));
+        return DownloadUrlDto.builder()
+                .downloadUrl(values.get("DownloadUrl"))
+                .expiresAt(FileInfoXmlMapper.parseDateTime(values.get("ExpiresAt")))
+                .build();
+    }
+
+    public boolean parseSuccess(InputStream body) throws XMLStreamException {
+        return "true".equalsIgnoreCase(readValues(body, Set.of("Success")).get("Success"));
+    }
+
+    private List<FileInfoDto> parseFileInfos(InputStream body, Set<String> rootElements, int max)
+            throws XMLStreamException {
+        List<FileInfoDto> files = new ArrayList<>();
+        FileInfoXmlMapper mapper = new FileInfoXmlMapper(rootElements);
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(body);
+        try {
+            while (reader.hasNext() && files.size() < max) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> mapper.startElement(reader.getLocalName(), isNil(reader));
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> mapper.characters(reader.getText());
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        FileInfoDto dto = mapper.endElement(reader.getLocalName());
+                        if (dto != null) {
+                            files.add(dto);
+                        }
+                    }
+                    default -> { }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return files;
+    }
+
+    /**
+     * Texto del primer elemento con cada uno de los nombres locales indicados.
+     */
+    private Map<String, String> readValues(InputStream body, Set<String> names) throws XMLStreamException {
+        Map<String, String> values = new HashMap<>();
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(body);
+        try {
+            while (reader.hasNext() && values.size() < names.size()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (names.contains(name) && !values.containsKey(name)) {
+                        boolean nil = isNil(reader);
+                        String text = reader.getElementText();
+                        values.put(name, nil ? null : text);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return values;
+    }
+
+    private boolean isNil(XMLStreamReader reader) {
+        return "true".equals(reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.fileshare.visualizer.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StompSubscriptionsTest {
+
+    private static final String TOPIC = "/topic/files-delta";
+
+    private SimpleMeterRegistry meterRegistry;
+    private StompSubscriptions subscriptions;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        subscriptions = new StompSubscriptions(meterRegistry);
+    }
+
+    @Test
+    void countsUntilUnsubscribeOrDisconnect() {
+        subscriptions.preSend(subscribe("s1", "sub-0", TOPIC), null);
+        subscriptions.preSend(subscribe("s2", "sub-0", TOPIC), null);
+        assertThat(liveSubscriptions()).isEqualTo(2);
+
+        subscriptions.preSend(frame(SimpMessageType.UNSUBSCRIBE, "s1", "sub-0", null), null);
+        assertThat(subscriptions.hasSubscribers(TOPIC)).isTrue();
+
+        subscriptions.preSend(frame(SimpMessageType.DISCONNECT, "s2", null, null), null);
+        assertThat(subscriptions.hasSubscribers(TOPIC)).isFalse();
+        assertThat(liveSubscriptions()).isZero();
+    }
+
+    @Test
+    void resubscribingWithTheSameIdReplacesTheDestination() {
+        subscriptions.preSend(subscribe("s1", "sub-0", TOPIC), null);
+        subscriptions.preSend(subscribe("s1", "sub-0", "/topic/stats"), null);
+
+        assertThat(subscriptions.hasSubscribers(TOPIC)).isFalse();
+        assertThat(subscriptions.hasSubscribers("/topic/stats")).isTrue();
+    }
+
+    @Test
+    void subscribeArrivingAfterDisconnectIsNotCounted() {
+        // El DISCONNECT del cierre se adelanta a un SUBSCRIBE que seguía en el canal
+        subscriptions.preSend(frame(SimpMessageType.DISCONNECT, "s1", null, null), null);
+        subscriptions.preSend(subscribe("s1", "sub-0", TOPIC), null);
+
+        assertThat(subscriptions.hasSubscribers(TOPIC)).isFalse();
+        assertThat(liveSubscriptions()).isZero();
+    }
+
+    private double liveSubscriptions() {
+        return meterRegistry.get("visualizer.websocket.subscriptions").gauge().value();
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String subscriptionId, String destination) {
+        return frame(SimpMessageType.SUBSCRIBE, sessionId, subscriptionId, destination);
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String sessionId, String subscriptionId,
+                                         String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,48 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.dto.FileListDelta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeltaReplayBufferTest {
+
+    private final DeltaReplayBuffer buffer = new DeltaReplayBuffer(4, new SimpleMeterRegistry());
+
+    @Test
+    void replaysMissedDeltasOfTheSameEpoch() {
+        append(1, 2, 3);
+
+        assertThat(buffer.since(buffer.getEpoch(), 1)).hasValueSatisfying(deltas ->
+                assertThat(deltas).extracting(FileListDelta::getSequence).containsExactly(2L, 3L));
+        assertThat(buffer.since(buffer.getEpoch(), 3)).hasValue(List.of());
+    }
+
+    @Test
+    void sequenceFromAnotherEpochRequiresSnapshot() {
+        append(1, 2, 3);
+
+        // Un cliente que vio el sequence 1 de un proceso anterior no puede continuar aquí
+        assertThat(buffer.since("previous-process", 1)).isEmpty();
+        assertThat(buffer.since(null, 1)).isEmpty();
+        assertThat(new DeltaReplayBuffer(4, new SimpleMeterRegistry()).getEpoch()).isNotEqualTo(buffer.getEpoch());
+    }
+
+    @Test
+    void evictedDeltasRequireSnapshot() {
+        append(1, 2, 3, 4, 5, 6);
+
+        assertThat(buffer.since(buffer.getEpoch(), 1)).isEmpty();
+        assertThat(buffer.since(buffer.getEpoch(), 2)).hasValueSatisfying(deltas -> assertThat(deltas).hasSize(4));
+    }
+
+    private void append(long... sequences) {
+        for (long sequence : sequences) {
+            buffer.append(FileListDelta.builder().epoch(buffer.getEpoch()).sequence(sequence)
+                    .upserted(List.of()).removed(List.of()).build());
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.dto.CursorPage;
+import com.fileshare.visualizer.dto.FileListFilter;
+import com.fileshare.visualizer.dto.FileSummaryDto;
+import com.fileshare.visualizer.model.FileMetadata;
+import com.fileshare.visualizer.model.FileMetadataChange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compara {@link FileListView.Columns} con un modelo de referencia (un mapa por _id
+ * ordenado y filtrado en cada consulta) tras secuencias aleatorias de altas, cambios y
+ * borrados, incluida la ida y vuelta por {@link SnapshotFile}, y la puesta al día de una
+ * vista restaurada frente a los cambios en vivo.
+ */
+class FileListViewTest {
+
+    private static final String[] STATUSES = {"PENDING", "PROCESSED", "ERROR"};
+    private static final String[] CONTENT_TYPES = {"application/pdf", "image/png", "text/plain"};
+    private static final String[] WORDS = {"Informe", "informeQ3", "report", "reporte", "canción", "Cancun",
+            "año2024", "foto", "FotoPlaya", "data_v2", "résumé", "resume", "Budget2025Final", "x", "ab"};
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final int MAX_DESCRIPTION_LENGTH = 512;
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, FileMetadata> model = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+
+    @Test
+    void pagesMatchReferenceModel() {
+        Random random = new Random(42);
+        FileListView.Columns columns = new FileListView.Columns(16, 1_000_000);
+        for (int step = 0; step < 20_000; step++) {
+            mutate(random, List.of(columns));
+            if (step % 500 == 0) {
+                assertPagesMatch(columns, randomFilter(random), 1 + random.nextInt(50));
+            }
+        }
+        assertPagesMatch(columns, FileListFilter.NONE, 37);
+    }
+
+    @Test
+    void searchMatchesReferenceModel() {
+        Random random = new Random(3);
+        FileListView.Columns columns = new FileListView.Columns(16, 1_000_000);
+        for (int step = 0; step < 10_000; step++) {
+            mutate(random, List.of(columns));
+            if (step % 50 == 0) {
+                assertSearchMatches(columns, randomQuery(random), randomFilter(random), 1 + random.nextInt(15));
+            }
+        }
+    }
+
+    @Test
+    void unknownFilterValueReturnsEmptyPage() {
+        FileListView.Columns columns = new FileListView.Columns(16, 1_000_000);
+        columns.upsert(file(new ObjectId().toHexString(), "PENDING", BASE, "informe.pdf"));
+
+        FileListFilter filter = FileListFilter.builder().status("DELETED").build();
+        assertThat(columns.page(null, 10, filter).getItems()).isEmpty();
+        assertThat(columns.search(FileSearchIndex.words("inf"), 10, filter)).isEmpty();
+    }
+
+    @Test
+    void rejectsDocumentsWithoutObjectId() {
+        FileListView.Columns columns = new FileListView.Columns(16, 1_000_000);
+
+        assertThatThrownBy(() -> columns.upsert(file("legacy-1", "PENDING", BASE, "informe.pdf")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void snapshotFileRoundTripKeepsPagesAndSearch() throws IOException {
+        Random random = new Random(7);
+        FileListView.Columns columns = new FileListView.Columns(16, 1_000_000);
+        for (int step = 0; step < 5_000; step++) {
+            mutate(random, List.of(columns));
+        }
+        FileStatisticsService.Snapshot stats = new FileStatisticsService.Snapshot(10, 2048, 3,
+                Map.of("PENDING", 4L, "PROCESSED", 6L), Map.of("application/pdf", 10L),
+                List.of(new FileStatisticsService.UserTotals(new UUID(1, 1).toString(), 10, 2048)),
+                BASE, "8263A1F2");
+        Path path = tempDir.resolve("visualizer.snapshot");
+        SnapshotFile.write(path, new SnapshotFile.Contents(BASE, columns.snapshot("{\"_data\": \"8263A1F2\"}"), stats));
+
+        SnapshotFile.Contents contents = SnapshotFile.read(path);
+        assertThat(contents.writtenAt()).isEqualTo(BASE);
+        assertThat(contents.view().resumeToken()).isEqualTo("{\"_data\": \"8263A1F2\"}");
+        assertThat(contents.stats()).isEqualTo(stats);
+
+        FileListView.Columns restored = FileListView.Columns.restore(contents.view(), model.size() * 2, 1_000_000);
+        assertThat(allPages(restored, FileListFilter.NONE, 37)).isEqualTo(allPages(columns, FileListFilter.NONE, 37));
+        assertPagesMatch(restored, FileListFilter.NONE, 50);
+
+        // Tras restaurar, la copia sigue admitiendo los mismos cambios que el original
+        for (int step = 0; step < 2_000; step++) {
+            mutate(random, List.of(columns, restored));
+            if (step % 100 == 0) {
+                FileListFilter filter = randomFilter(random);
+                assertPagesMatch(restored, filter, 1 + random.nextInt(50));
+                assertSearchMatches(restored, randomQuery(random), filter, 1 + random.nextInt(15));
+            }
+        }
+        assertThat(allPages(restored, FileListFilter.NONE, 37)).isEqualTo(allPages(columns, FileListFilter.NONE, 37));
+    }
+
+    @Test
+    void corruptedSnapshotFileIsRejected() throws IOException {
+        FileListView.Columns columns = new FileListView.Columns(16, 1_000_000);
+        columns.upsert(file(new ObjectId().toHexString(), "PENDING", BASE, "informe.pdf"));
+        Path path = tempDir.resolve("visualizer.snapshot");
+        SnapshotFile.write(path, new SnapshotFile.Contents(BASE, columns.snapshot("token"), null));
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[30] ^= 1;
+        Files.write(path, bytes);
+
+        assertThatThrownBy(() -> SnapshotFile.read(path))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+
+    @Test
+    void restoreRejectsSnapshotAboveMaxRows() {
+        FileListView.Columns columns = new FileListView.Columns(16, 1_000_000);
+        for (int i = 0; i < 10; i++) {
+            columns.upsert(file(new ObjectId().toHexString(), "PENDING", BASE.plusSeconds(i), "f" + i));
+        }
+
+        assertThatThrownBy(() -> FileListView.Columns.restore(columns.snapshot("token"), 16, 5))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void liveChangesDuringCatchUpApplyAfterTheReplay() throws InterruptedException {
+        String id = new ObjectId().toHexString();
+        FileListView.Columns restored = new FileListView.Columns(16, 1_000_000);
+        restored.upsert(file(id, "PENDING", BASE, "informe.pdf"));
+
+        FileChangeStreamListener changeStream = mock(FileChangeStreamListener.class);
+        FileListView view = new FileListView(mock(MongoTemplate.class), changeStream,
+                mock(FileStatisticsService.class), new SimpleMeterRegistry(), true, 1_000_000, 16,
+                Duration.ofHours(1), 10);
+        when(changeStream.replaySince(eq(token(1)), any())).thenAnswer(invocation -> {
+            Consumer<FileMetadataChange> consumer = invocation.getArgument(1);
+            // El listener en vivo entrega los cambios 2 y 3 antes de que la reproducción llegue al 2
+            view.onFileChange(update(id, "ERROR", 2));
+            view.onFileChange(update(id, "PROCESSED", 3));
+            consumer.accept(update(id, "ERROR", 2));
+            return token(2);
+        });
+
+        view.restore(restored.snapshot(token(1)));
+        view.start();
+        for (int i = 0; i < 500 && view.snapshot().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        view.stop();
+
+        assertThat(view.page(null, 10, FileListFilter.NONE).orElseThrow().getItems())
+                .extracting(FileSummaryDto::getStatus).containsExactly("PROCESSED");
+        assertThat(view.snapshot().orElseThrow().resumeToken()).isEqualTo(token(3));
+    }
+
+    // --- Modelo de referencia ---
+
+    /** Aplica la misma operación aleatoria al modelo y a todas las columnas. */
+    private void mutate(Random random, List<FileListView.Columns> targets) {
+        int op = random.nextInt(10);
+        if (op < 5 || ids.isEmpty()) {
+            // Ids del mismo segundo para ejercitar el desempate por _id
+            String id = new ObjectId(new Date(1_700_000_000_000L + random.nextInt(1000) * 1000L),
+                    random.nextInt(1 << 24)).toHexString();
+            upsert(randomFile(id, random), targets);
+        } else if (op < 8) {
+            FileMetadata previous = model.get(ids.get(random.nextInt(ids.size())));
+            FileMetadata changed = randomFile(previous.getId(), random);
+            if (random.nextBoolean()) {
+                // Cambio de estado sin tocar el texto ni la clave de orden
+                changed.setCreatedAt(previous.getCreatedAt());
+                changed.setOriginalFileName(previous.getOriginalFileName());
+                changed.setDescription(previous.getDescription());
+            }
+            upsert(changed, targets);
+        } else {
+            String id = random.nextInt(10) == 0 ? new ObjectId().toHexString() : ids.get(random.nextInt(ids.size()));
+            if (model.remove(id) != null) {
+                ids.remove(id);
+            }
+            targets.forEach(columns -> columns.delete(new ObjectId(id)));
+        }
+    }
+
+    private void upsert(FileMetadata metadata, List<FileListView.Columns> targets) {
+        if (model.put(metadata.getId(), metadata) == null) {
+            ids.add(metadata.getId());
+        }
+        targets.forEach(columns -> columns.upsert(metadata));
+    }
+
+    private List<FileMetadata> expected(FileListFilter filter) {
+        return model.values().stream()
+                .filter(m -> filter.getStatus() == null || filter.getStatus().equals(m.getStatus()))
+                .filter(m -> filter.getContentType() == null || filter.getContentType().equals(m.getContentType()))
+                .filter(m -> filter.getUserId() == null || filter.getUserId().equals(m.getUserId().toString()))
+                .sorted(Comparator.comparing(FileMetadata::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparing(m -> new ObjectId(m.getId()))
+                        .reversed())
+                .toList();
+    }
+
+    private void assertPagesMatch(FileListView.Columns columns, FileListFilter filter, int limit) {
+        List<FileSummaryDto> expected = expected(filter).stream().map(FileListViewTest::summary).toList();
+        List<FileSummaryDto> pages = allPages(columns, filter, limit);
+        if (pages.size() < expected.size()) {
+            // Como en MongoDB, no hay cursor después de una fila sin createdAt
+            assertThat(pages.get(pages.size() - 1).getCreatedAt()).as("last row before the cursor stops").isNull();
+            assertThat(pages).isEqualTo(expected.subList(0, pages.size()));
+        } else {
+            assertThat(pages).isEqualTo(expected);
+        }
+    }
+
+    private static List<FileSummaryDto> allPages(FileListView.Columns columns, FileListFilter filter, int limit) {
+        List<FileSummaryDto> items = new ArrayList<>();
+        PageCursor cursor = null;
+        while (true) {
+            CursorPage<FileSummaryDto> page = columns.page(cursor, limit, filter);
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(limit);
+            items.addAll(page.getItems());
+            if (page.getNextCursor() == null) {
+                return items;
+            }
+            cursor = PageCursor.decode(page.getNextCursor());
+        }
+    }
+
+    private void assertSearchMatches(FileListView.Columns columns, String query, FileListFilter filter, int limit) {
+        List<String> words = FileSearchIndex.words(query);
+        List<FileSummaryDto> expected = words.isEmpty() ? List.of() : expected(filter).stream()
+                .filter(m -> {
+                    Set<String> terms = FileSearchIndex.terms(m.getOriginalFileName(), truncate(m.getDescription()));
+                    return words.stream().allMatch(w -> terms.stream().anyMatch(t -> t.startsWith(w)));
+                })
+                .limit(limit)
+                .map(FileListViewTest::summary)
+                .toList();
+
+        assertThat(columns.search(words, limit, filter)).as("query '%s' with %s", query, filter).isEqualTo(expected);
+    }
+
+    // --- Datos aleatorios ---
+
+    private static FileMetadata randomFile(String id, Random random) {
+        FileMetadata metadata = file(id, STATUSES[random.nextInt(STATUSES.length)],
+                random.nextInt(20) == 0 ? null : BASE.plusSeconds(random.nextInt(500)), randomText(random, 4));
+        metadata.setFileId(random.nextInt(50) == 0 ? null : UUID.randomUUID());
+        metadata.setUserId(new UUID(1, random.nextInt(5)));
+        metadata.setContentType(random.nextInt(5) == 0 ? null : CONTENT_TYPES[random.nextInt(CONTENT_TYPES.length)]);
+        metadata.setFileSize(random.nextInt(9) == 0 ? null : (long) random.nextInt(1_000_000));
+        String description = randomText(random, 3);
+        if (description != null && random.nextInt(20) == 0) {
+            // Las descripciones largas solo se indexan hasta MAX_DESCRIPTION_LENGTH
+            description = description + " " + "z".repeat(600) + " tailword";
+        }
+        metadata.setDescription(description);
+        return metadata;
+    }
+
+    private static FileMetadataChange update(String id, String status, int position) {
+        return FileMetadataChange.builder()
+                .type(FileMetadataChange.Type.UPDATE)
+                .documentId(id)
+                .current(file(id, status, BASE, "informe.pdf"))
+                .resumeToken(token(position))
+                .build();
+    }
+
+    private static String token(int position) {
+        return String.format("{\"_data\": \"8200%04d\"}", position);
+    }
+
+    private static FileMetadata file(String id, String status, LocalDateTime createdAt, String name) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setId(id);
+        metadata.setFileId(UUID.randomUUID());
+        metadata.setUserId(new UUID(1, 0));
+        metadata.setStatus(status);
+        metadata.setCreatedAt(createdAt);
+        metadata.setOriginalFileName(name);
+        return metadata;
+    }
+
+    private static String randomText(Random random, int maxWords) {
+        int count = random.nextInt(maxWords);
+        if (count == 0) {
+            return random.nextBoolean() ? null : "";
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(" -_.".charAt(random.nextInt(4)));
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String randomQuery(Random random) {
+        if (random.nextInt(30) == 0) {
+            return "tailword";
+        }
+        StringBuilder query = new StringBuilder();
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            query.append(word, 0, 1 + random.nextInt(word.length())).append(' ');
+        }
+        return query.toString();
+    }
+
+    private static FileListFilter randomFilter(Random random) {
+        return FileListFilter.builder()
+                .status(random.nextInt(3) == 0 ? STATUSES[random.nextInt(STATUSES.length)] : null)
+                .contentType(random.nextInt(4) == 0 ? CONTENT_TYPES[random.nextInt(CONTENT_TYPES.length)] : null)
+                .userId(random.nextInt(3) == 0 ? new UUID(1, random.nextInt(6)).toString() : null)
+                .build();
+    }
+
+    private static String truncate(String description) {
+        return description != null && description.length() > MAX_DESCRIPTION_LENGTH
+                ? description.substring(0, MAX_DESCRIPTION_LENGTH) : description;
+    }
+
+    private static FileSummaryDto summary(FileMetadata metadata) {
+        return FileSummaryDto.builder()
+                .fileId(metadata.getFileId() != null ? metadata.getFileId().toString() : null)
+                .userId(metadata.getUserId().toString())
+                .fileName(metadata.getOriginalFileName())
+                .contentType(metadata.getContentType())
+                .fileSize(metadata.getFileSize())
+                .status(metadata.getStatus())
+                .createdAt(metadata.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.fileshare.visualizer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSearchIndexTest {
+
+    @Test
+    void splitsCamelCaseKeepingSegmentsWhole() {
+        assertThat(FileSearchIndex.terms("informeQ3"))
+                .containsExactlyInAnyOrder("informeq3", "informe", "q3");
+    }
+
+    @Test
+    void splitsLettersFromDigits() {
+        assertThat(FileSearchIndex.terms("informe2024"))
+                .containsExactlyInAnyOrder("informe2024", "informe", "2024");
+    }
+
+    @Test
+    void combinesCamelCaseAndDigitSplits() {
+        assertThat(FileSearchIndex.terms("reportFinal2024.pdf"))
+                .containsExactlyInAnyOrder("reportfinal2024", "report", "final2024", "final", "2024", "pdf");
+    }
+
+    @Test
+    void skipsOneCharacterParts() {
+        assertThat(FileSearchIndex.terms("v2Draft")).containsExactlyInAnyOrder("v2draft", "v2", "draft");
+        assertThat(FileSearchIndex.terms("a b")).containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void normalizesAccentsAndCase() {
+        assertThat(FileSearchIndex.terms("Presentación Año")).containsExactlyInAnyOrder("presentacion", "ano");
+        assertThat(FileSearchIndex.words("PRESENTACIÓN  año")).containsExactly("presentacion", "ano");
+    }
+
+    @Test
+    void truncatesLongTerms() {
+        String longWord = "a".repeat(FileSearchIndex.MAX_TERM_LENGTH + 10);
+        assertThat(FileSearchIndex.terms(longWord)).containsExactly("a".repeat(FileSearchIndex.MAX_TERM_LENGTH));
+    }
+
+    @Test
+    void queryWordsAreDistinctAndCapped() {
+        assertThat(FileSearchIndex.words("q3 informe q3")).containsExactly("q3", "informe");
+        assertThat(FileSearchIndex.words("a b c d e f g h i j")).hasSize(FileSearchIndex.MAX_QUERY_WORDS);
+        assertThat(FileSearchIndex.words(null)).isEmpty();
+    }
+
+    @Test
+    void matchesEveryWordAsPrefix() {
+        FileSearchIndex index = new FileSearchIndex();
+        index.add(0, "informeQ3.pdf", "Resultados del trimestre");
+        index.add(1, "informe2024.xlsx", null);
+        index.add(2, "notas.txt", "q3 pendiente");
+
+        assertThat(rows(index.matches(List.of("q3")))).containsExactly(0, 2);
+        assertThat(rows(index.matches(List.of("infor")))).containsExactly(0, 1);
+        assertThat(rows(index.matches(List.of("informe", "trim")))).containsExactly(0);
+        assertThat(rows(index.matches(List.of("2024")))).containsExactly(1);
+        assertThat(rows(index.matches(List.of("zzz")))).isEmpty();
+        assertThat(index.matches(List.of())).isNull();
+    }
+
+    @Test
+    void updateAndRemoveDropStaleTerms() {
+        FileSearchIndex index = new FileSearchIndex();
+        index.add(0, "informeQ3.pdf", null);
+        index.update(0, "informeQ3.pdf", null, "resumenQ4.pdf", "borrador");
+
+        assertThat(rows(index.matches(List.of("q3")))).isEmpty();
+        assertThat(rows(index.matches(List.of("q4", "borr")))).containsExactly(0);
+
+        index.remove(0, "resumenQ4.pdf", "borrador");
+        assertThat(index.termCount()).isZero();
+        assertThat(index.estimatedBytes()).isZero();
+    }
+
+    @Test
+    void snapshotRestoresTranslatedRows() {
+        FileSearchIndex index = new FileSearchIndex();
+        index.add(3, "informeQ3.pdf", null);
+        index.add(5, "informe2024.xlsx", null);
+
+        // La fila 3 pasa a la posición 1 y la 5 a la 0
+        int[] positions = {-1, -1, -1, 1, -1, 0};
+        FileSearchIndex restored = FileSearchIndex.restore(index.snapshot(positions));
+
+        assertThat(restored.termCount()).isEqualTo(index.termCount());
+        assertThat(rows(restored.matches(List.of("informe")))).containsExactly(0, 1);
+        assertThat(rows(restored.matches(List.of("q3")))).containsExactly(1);
+    }
+
+    private static List<Integer> rows(BitSet rows) {
+        return rows.stream().boxed().toList();
+    }
+}
@@ -0,0 +1,216 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.config.StompSubscriptions;
+import com.fileshare.visualizer.dto.FileStatsDto;
+import com.fileshare.visualizer.model.FileMetadata;
+import com.fileshare.visualizer.model.FileMetadataChange;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FileStatisticsServiceTest {
+
+    private static final UUID USER = UUID.fromString("6f1c1a52-8d7e-4c55-9a43-3a3e0c4d2b10");
+
+    private MongoTemplate mongoTemplate;
+    private FileChangeStreamListener changeStream;
+    private FileStatisticsService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        changeStream = mock(FileChangeStreamListener.class);
+        when(mongoTemplate.getCollectionName(FileMetadata.class)).thenReturn("file_metadata");
+        service = new FileStatisticsService(mongoTemplate, mock(SimpMessagingTemplate.class),
+                mock(StompSubscriptions.class), changeStream,
+                Duration.ofMinutes(15), Duration.ofSeconds(30), 5000, 1000);
+    }
+
+    @Test
+    void replayCatchesUpWithoutDoubleCountingLiveChanges() {
+        service.restore(snapshot(10, "0005"), token("0003"));
+
+        // En vivo llegan 0006 y 0007 mientras la vista reproduce desde 0003
+        service.onFileChange(insert("a", 100, "0006"));
+        service.onFileChange(insert("b", 100, "0007"));
+        service.replay(insert("x", 100, "0004"));
+        service.replay(insert("y", 100, "0005"));
+        service.replay(insert("a", 100, "0006"));
+        service.finishReplay(true);
+        service.onFileChange(insert("c", 100, "0008"));
+
+        FileStatsDto stats = service.getStats().orElseThrow();
+        // 0004 y 0005 ya estaban en el snapshot; 0006, 0007 y 0008 se cuentan una vez
+        assertThat(stats.getTotalFiles()).isEqualTo(13);
+        assertThat(stats.getTotalBytes()).isEqualTo(1300);
+        assertThat(stats.isApproximate()).isFalse();
+        assertThat(service.getUserStats(USER.toString()).orElseThrow().getFiles()).isEqualTo(13);
+    }
+
+    @Test
+    void appliesUpdatesAndDeletesWithPreImages() {
+        service.restore(snapshot(10, "0005"), token("0005"));
+        service.finishReplay(true);
+
+        FileMetadata before = file("a", 100, "PROCESSED");
+        FileMetadata after = file("a", 250, "ARCHIVED");
+        service.onFileChange(FileMetadataChange.builder().type(FileMetadataChange.Type.UPDATE)
+                .documentId("a").previous(before).current(after).resumeToken(token("0006")).build());
+        service.onFileChange(FileMetadataChange.builder().type(FileMetadataChange.Type.DELETE)
+                .documentId("a").previous(after).resumeToken(token("0007")).build());
+
+        FileStatsDto stats = service.getStats().orElseThrow();
+        assertThat(stats.getTotalFiles()).isEqualTo(9);
+        assertThat(stats.getTotalBytes()).isEqualTo(900);
+        assertThat(stats.getByStatus()).containsEntry("PROCESSED", 9L).doesNotContainKey("ARCHIVED");
+        assertThat(stats.isApproximate()).isFalse();
+    }
+
+    @Test
+    void failedReplayLeavesStatisticsApproximate() {
+        service.restore(snapshot(10, "0005"), token("0003"));
+        service.onFileChange(insert("a", 100, "0006"));
+        service.finishReplay(false);
+
+        FileStatsDto stats = service.getStats().orElseThrow();
+        assertThat(stats.getTotalFiles()).isEqualTo(11);
+        assertThat(stats.isApproximate()).isTrue();
+    }
+
+    @Test
+    void snapshotBehindTheViewIsApproximate() {
+        service.restore(snapshot(10, "0002"), token("0003"));
+
+        assertThat(service.getStats().orElseThrow().isApproximate()).isTrue();
+        // Sin reproducción pendiente los cambios en vivo se aplican directamente
+        service.onFileChange(insert("a", 100, "0004"));
+        assertThat(service.getStats().orElseThrow().getTotalFiles()).isEqualTo(11);
+    }
+
+    @Test
+    void changeWithoutPreImageMarksDrift() {
+        service.restore(snapshot(10, "0005"), token("0005"));
+        service.finishReplay(true);
+        service.onFileChange(FileMetadataChange.builder().type(FileMetadataChange.Type.DELETE)
+                .documentId("a").resumeToken(token("0006")).build());
+
+        assertThat(service.getStats().orElseThrow().isApproximate()).isTrue();
+    }
+
+    @Test
+    void snapshotCarriesThePositionOfTheLastChange() {
+        service.restore(snapshot(10, "0005"), token("0005"));
+        service.finishReplay(true);
+        service.onFileChange(insert("a", 100, "0009"));
+
+        FileStatisticsService.Snapshot snapshot = service.snapshot().orElseThrow();
+        assertThat(snapshot.files()).isEqualTo(11);
+        assertThat(snapshot.position()).isEqualTo("0009");
+    }
+
+    @Test
+    void noSnapshotWhileReplaying() {
+        service.restore(snapshot(10, "0005"), token("0003"));
+
+        assertThat(service.snapshot()).isEmpty();
+    }
+
+    @Test
+    void changesDuringAggregationConvergeWithoutAnotherReconcile() {
+        service.restore(snapshot(10, "0005"), token("0005"));
+        service.finishReplay(true);
+        // La agregación arranca en 0010 y ve 20 archivos; mientras corre llegan 0009, 0011 y 0012
+        aggregationReturns(20, "0010",
+                insert("a", 100, "0009"), insert("b", 100, "0011"), insert("c", 100, "0012"));
+
+        service.reconcile();
+
+        FileStatsDto stats = service.getStats().orElseThrow();
+        // 0009 ya lo incluye la agregación; 0011 y 0012 se vuelven a aplicar sobre ella
+        assertThat(stats.getTotalFiles()).isEqualTo(22);
+        assertThat(stats.getTotalBytes()).isEqualTo(2200);
+        assertThat(stats.isApproximate()).isFalse();
+
+        // Un cambio que se repite tras la sustitución no se cuenta dos veces
+        service.onFileChange(insert("c", 100, "0012"));
+        service.onFileChange(insert("d", 100, "0013"));
+        assertThat(service.getStats().orElseThrow().getTotalFiles()).isEqualTo(23);
+    }
+
+    @Test
+    void reconcileClearsDriftFromChangesItAlreadyCounts() {
+        service.restore(snapshot(10, "0005"), token("0005"));
+        service.finishReplay(true);
+        service.onFileChange(FileMetadataChange.builder().type(FileMetadataChange.Type.DELETE)
+                .documentId("a").resumeToken(token("0006")).build());
+        assertThat(service.getStats().orElseThrow().isApproximate()).isTrue();
+
+        // Un DELETE sin pre-image anterior al inicio de la agregación ya está en su resultado
+        aggregationReturns(9, "0010", FileMetadataChange.builder().type(FileMetadataChange.Type.DELETE)
+                .documentId("b").resumeToken(token("0008")).build());
+        service.reconcile();
+        assertThat(service.getStats().orElseThrow().isApproximate()).isFalse();
+
+        // Uno posterior no se puede aplicar sobre el resultado
+        aggregationReturns(8, "0020", FileMetadataChange.builder().type(FileMetadataChange.Type.DELETE)
+                .documentId("c").resumeToken(token("0021")).build());
+        service.reconcile();
+        FileStatsDto stats = service.getStats().orElseThrow();
+        assertThat(stats.getTotalFiles()).isEqualTo(8);
+        assertThat(stats.isApproximate()).isTrue();
+    }
+
+    /** La agregación devuelve un grupo de {@code files} archivos y entrega los cambios mientras se lee. */
+    private void aggregationReturns(long files, String startPosition, FileMetadataChange... during) {
+        when(changeStream.currentResumeToken()).thenReturn(token(startPosition));
+        Document group = new Document("_id", new Document("userId", USER.toString())
+                .append("status", "PROCESSED").append("contentType", "application/pdf").append("isEncrypted", false))
+                .append("files", files).append("bytes", files * 100);
+        when(mongoTemplate.aggregateStream(any(Aggregation.class), eq("file_metadata"), eq(Document.class)))
+                .thenAnswer(invocation -> Stream.of(group)
+                        .peek(g -> List.of(during).forEach(service::onFileChange)));
+    }
+
+    private static FileStatisticsService.Snapshot snapshot(long files, String position) {
+        return new FileStatisticsService.Snapshot(files, files * 100, 0, Map.of("PROCESSED", files),
+                Map.of("application/pdf", files),
+                List.of(new FileStatisticsService.UserTotals(USER.toString(), files, files * 100)),
+                LocalDateTime.now(), position);
+    }
+
+    private static FileMetadataChange insert(String id, long size, String position) {
+        return FileMetadataChange.builder().type(FileMetadataChange.Type.INSERT)
+                .documentId(id).current(file(id, size, "PROCESSED")).resumeToken(token(position)).build();
+    }
+
+    private static FileMetadata file(String id, long size, String status) {
+        FileMetadata file = new FileMetadata();
+        file.setId(id);
+        file.setUserId(USER);
+        file.setFileSize(size);
+        file.setStatus(status);
+        file.setContentType("application/pdf");
+        file.setIsEncrypted(false);
+        return file;
+    }
+
+    private static String token(String position) {
+        return "{\"_data\": \"" + position + "\"}";
+    }
+}
@@ -0,0 +1,102 @@
+package com.fileshare.visualizer.service;
+
+import com.fileshare.visualizer.dto.FileInfoDto;
+import com.fileshare.visualizer.soap.LastKnownGoodStore;
+import com.fileshare.visualizer.soap.ReactiveSoapResponseParser;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactiveSoapClientServiceTest {
+
+    private final LastKnownGoodStore lastKnownGood =
+            new LastKnownGoodStore(new SimpleMeterRegistry(), 100, Duration.ofHours(1), 10);
+    private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+
+    @Test
+    void codecLimitIsNotServedAsStaleFallback() {
+        lastKnownGood.putUserFiles("u1", List.of(FileInfoDto.builder().fileId("old").build()));
+        ReactiveSoapClientService service = service(userFiles(3000), 64 * 1024);
+
+        assertThatThrownBy(() -> service.getUserFiles("u1").collectList().block())
+                .isInstanceOf(DataBufferLimitException.class);
+    }
+
+    @Test
+    void largeUserFilesResponseIsReadCompletely() {
+        ReactiveSoapClientService service = service(userFiles(3000), -1);
+
+        assertThat(service.getUserFiles("u1").collectList().block()).hasSize(3000);
+    }
+
+    @Test
+    void successfulResponsesFeedTheLastKnownGoodStore() {
+        ReactiveSoapClientService service = service(userFiles(3), -1);
+
+        service.getUserFiles("u1").collectList().block();
+
+        assertThat(lastKnownGood.staleUserFiles("u1")).hasValueSatisfying(files ->
+                assertThat(files).extracting(FileInfoDto::getFileId).containsExactly("f0", "f1", "f2"));
+    }
+
+    @Test
+    void partiallyReadUserFilesAreNotStored() {
+        ReactiveSoapClientService service = service(userFiles(3), -1);
+
+        service.getUserFiles("u1").take(1).blockLast();
+
+        assertThat(lastKnownGood.staleUserFiles("u1")).isEmpty();
+    }
+
+    private ReactiveSoapClientService service(String response, int maxInMemorySize) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_XML_VALUE)
+                        .body(body(response))
+                        .build()))
+                .build();
+        return new ReactiveSoapClientService(webClient, new ReactiveSoapResponseParser(maxInMemorySize),
+                lastKnownGood, circuitBreakers, RetryRegistry.of(RetryConfig.custom().maxAttempts(1).build()));
+    }
+
+    private static Flux<DataBuffer> body(String response) {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        int chunk = 8192;
+        return Flux.range(0, (bytes.length + chunk - 1) / chunk)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        Arrays.copyOfRange(bytes, i * chunk, Math.min(bytes.length, (i + 1) * chunk))));
+    }
+
+    private static String userFiles(int count) {
+        StringBuilder files = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            files.append("<FileInfo><FileId>f").append(i).append("</FileId><UserId>u1</UserId>")
+                    .append("<FileName>report-").append(i).append(".pdf</FileName>")
+                    .append("<ContentType>application/pdf</ContentType><FileSize>12</FileSize>")
+                    .append("<Status>COMPLETED</Status><CreatedAt>2026-01-01T10:00:00Z</CreatedAt></FileInfo>");
+        }
+        return "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\"><s:Body>"
+                + "<GetUserFilesResponse><GetUserFilesResult><Files>" + files
+                + "</Files></GetUserFilesResult></GetUserFilesResponse></s:Body></s:Envelope>";
+    }
+}
@@ -0,0 +1,70 @@
+package com.fileshare.visualizer.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight flights = new SingleFlight("getFile", meterRegistry);
+
+    @Test
+    void cancellingTheLeaderDoesNotFailTheSharedCall() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> response = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean callInterrupted = new AtomicBoolean();
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<String> leader = executor.submit(() -> flights.execute("f1", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                try {
+                    return response.get();
+                } catch (InterruptedException e) {
+                    callInterrupted.set(true);
+                    throw new IllegalStateException(e);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<String> follower = executor.submit(() -> flights.execute("f1", () -> "second call"));
+            while (followers() < 1) {
+                Thread.sleep(1);
+            }
+
+            // Como hace un lote al vencer: interrumpe a quien lanzó la llamada
+            leader.cancel(true);
+            response.complete("shared");
+
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("shared");
+            assertThat(calls.get()).isEqualTo(1);
+            assertThat(callInterrupted.get()).isFalse();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double followers() {
+        return meterRegistry.get("visualizer.soap.coalescing.calls").tag("role", "follower").counter().count();
+    }
+
+    @Test
+    void keyIsReleasedAfterTheCall() {
+        assertThat(flights.<String>execute("f1", () -> "a")).isEqualTo("a");
+        assertThat(flights.<String>execute("f1", () -> "b")).isEqualTo("b");
+    }
+}
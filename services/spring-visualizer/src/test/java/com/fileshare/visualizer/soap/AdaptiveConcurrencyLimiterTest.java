@@ -0,0 +1,80 @@
+package com.fileshare.visualizer.soap;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void soapFaultsAndClientErrorsKeepTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+
+        fail(limiter, new SoapResponseException("File not found", null));
+        fail(limiter, HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null));
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void timeoutsAndServerErrorsReduceTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+
+        fail(limiter, new ResourceAccessException("Read timed out", new SocketTimeoutException()));
+        assertThat(limiter.getLimit()).isEqualTo(9);
+
+        fail(limiter, HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Unavailable", null, null, null));
+        assertThat(limiter.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    void limitGrowsOncePerWindowOfSuccesses() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = limiter(4);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Cuatro llamadas simultáneas llenan el límite y terminan bien a la vez
+        List<Thread> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            calls.add(Thread.ofVirtual().start(() -> limiter.execute("GetFile", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            })));
+        }
+        while (limiter.getInFlight() < 4) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (Thread call : calls) {
+            call.join();
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    private static void fail(AdaptiveConcurrencyLimiter limiter, RuntimeException error) {
+        assertThatThrownBy(() -> limiter.execute("GetFile", () -> {
+            throw error;
+        })).isSameAs(error);
+    }
+
+    private static AdaptiveConcurrencyLimiter limiter(int initialLimit) {
+        return new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), true, initialLimit, 1, 50,
+                0.9, 2000, 50, 100);
+    }
+}
@@ -0,0 +1,74 @@
+package com.fileshare.visualizer.soap;
+
+import com.fileshare.visualizer.dto.FileInfoDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactiveSoapResponseParserTest {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    @Test
+    void parsesUserFilesLargerThanTheDefaultCodecLimit() {
+        String response = userFilesResponse(3000);
+        assertThat(response.length()).isGreaterThan(256 * 1024);
+
+        List<FileInfoDto> files = new ReactiveSoapResponseParser(-1).parseFiles(chunks(response))
+                .collectList().block();
+
+        assertThat(files).hasSize(3000);
+        assertThat(files.get(2999).getFileId()).isEqualTo("f2999");
+        assertThat(files.get(0).getFileName()).isEqualTo("a & b.txt");
+        assertThat(files.get(0).getDescription()).isNull();
+    }
+
+    @Test
+    void configuredLimitCountsTheWholeBody() {
+        // Cada FileInfo es pequeño, pero el contador solo se reinicia al cerrar el Body
+        ReactiveSoapResponseParser parser = new ReactiveSoapResponseParser(256 * 1024);
+        List<FileInfoDto> emitted = new ArrayList<>();
+
+        assertThatThrownBy(() -> parser.parseFiles(chunks(userFilesResponse(3000)))
+                .doOnNext(emitted::add).blockLast())
+                .isInstanceOf(DataBufferLimitException.class);
+        assertThat(emitted).isNotEmpty().hasSizeLessThan(3000);
+    }
+
+    static String userFilesResponse(int count) {
+        StringBuilder files = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            files.append("<FileInfo><FileId>f").append(i).append("</FileId><UserId>u1</UserId>")
+                    .append("<FileName>a &amp; b.txt</FileName><ContentType>text/plain</ContentType>")
+                    .append("<FileSize>12</FileSize><Hash>h</Hash><IsEncrypted>false</IsEncrypted>")
+                    .append("<Description xsi:nil=\"true\"/><Status>COMPLETED</Status>")
+                    .append("<CreatedAt>2026-01-01T10:00:00Z</CreatedAt><ProcessedAt xsi:nil=\"true\"/></FileInfo>");
+        }
+        return "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"><s:Body>"
+                + "<GetUserFilesResponse><GetUserFilesResult><Files>" + files
+                + "</Files></GetUserFilesResult></GetUserFilesResponse></s:Body></s:Envelope>";
+    }
+
+    /** El body en fragmentos, como llega de WebClient. */
+    static Flux<DataBuffer> chunks(String response) {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> parts = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+            byte[] part = new byte[Math.min(CHUNK_SIZE, bytes.length - offset)];
+            System.arraycopy(bytes, offset, part, 0, part.length);
+            parts.add(part);
+        }
+        return Flux.fromIterable(parts).map(DefaultDataBufferFactory.sharedInstance::wrap);
+    }
+}